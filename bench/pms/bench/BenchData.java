@@ -0,0 +1,154 @@
+package pms.bench;
+
+import pms.model.ParkingDataStore;
+import pms.model.Vehicle;
+import pms.model.VehicleStatus;
+import pms.model.VehicleType;
+import pms.util.DateTimeUtil;
+import pms.util.FeeCalculator;
+import pms.util.FileHandler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds synthetic parking histories for the benchmarks
+ * Run with -Dpms.data.dir pointing at a scratch directory; the build's bench target does this
+ * @author uSer
+ */
+public final class BenchData {
+    private static final VehicleType[] VEHICLE_TYPES = {VehicleType.CAR, VehicleType.BIKE, VehicleType.VAN};
+    private static final long VISIT_SPACING = TimeUnit.MINUTES.toMillis(7);
+    private static final AtomicInteger SERIAL = new AtomicInteger();
+    
+    /**
+     * Calls per iteration of the batched write benchmarks; fits the free slots of the smallest lot
+     */
+    public static final int BATCH_SIZE = 20;
+    
+    private BenchData() {
+    }
+    
+    /**
+     * Number of distinct plates in a history (returning vehicles share a plate)
+     * @param historySize Number of records
+     * @return Distinct plate count
+     */
+    public static int distinctPlates(int historySize) {
+        return Math.max(1000, historySize / 20);
+    }
+    
+    /**
+     * Plate used by the benchmarks for a given index
+     * @param index Plate index
+     * @return Vehicle number
+     */
+    public static String plate(int index) {
+        return String.format("HB%07d", index);
+    }
+    
+    /**
+     * Generate a history: half the slots parked, the rest checked out, newest last
+     * @param historySize Number of records
+     * @param totalSlots Number of parking slots
+     * @return Vehicle records
+     */
+    public static ArrayList<Vehicle> history(int historySize, int totalSlots) {
+        ArrayList<Vehicle> vehicles = new ArrayList<>(historySize);
+        int parked = Math.min(totalSlots / 2, historySize);
+        int plates = distinctPlates(historySize);
+        long now = DateTimeUtil.now();
+        long start = now - historySize * VISIT_SPACING;
+        
+        for (int i = 0; i < historySize; i++) {
+            long entry = start + i * VISIT_SPACING;
+            VehicleType type = VEHICLE_TYPES[i % VEHICLE_TYPES.length];
+            boolean isParked = i >= historySize - parked;
+            // Parked vehicles get plates no checked-out record uses
+            String number = isParked ? "PK" + i : plate(i % plates);
+            Vehicle v;
+            if (isParked) {
+                v = new Vehicle(number, type, historySize - i, entry, DateTimeUtil.NO_TIME, VehicleStatus.IN);
+            } else {
+                long exit = entry + TimeUnit.MINUTES.toMillis(30 + (i % 600));
+                v = new Vehicle(number, type, 1 + (i % totalSlots), entry, exit, VehicleStatus.OUT);
+                v.setFeeCents(FeeCalculator.toCents(FeeCalculator.calculateFee(entry, exit)));
+            }
+            vehicles.add(v);
+        }
+        return vehicles;
+    }
+    
+    /**
+     * Write a history to the data file and load it into a fresh data store
+     * @param historySize Number of records
+     * @param totalSlots Number of parking slots
+     * @return Data store loaded the same way the application loads it
+     */
+    public static ParkingDataStore loadStore(int historySize, int totalSlots) {
+        clearDataDirectory();
+        FileHandler.saveVehiclesToFile(history(historySize, totalSlots));
+        ParkingDataStore store = new ParkingDataStore(totalSlots);
+        // Measure the loaded store, not the archive still loading in the background
+        if (!store.awaitHistory(TimeUnit.HOURS.toMillis(1))) {
+            throw new IllegalStateException("History archive did not load");
+        }
+        return store;
+    }
+    
+    /**
+     * Get a vehicle number no earlier call returned
+     * @param prefix Prefix for the number
+     * @return Vehicle number
+     */
+    public static String newNumber(String prefix) {
+        return prefix + SERIAL.incrementAndGet();
+    }
+    
+    /**
+     * Park vehicles in free slots, e.g. for a batch of checkouts
+     * @param store Data store
+     * @param prefix Prefix for the vehicle numbers
+     * @param count Number of vehicles to park
+     * @return Vehicle numbers parked
+     */
+    public static String[] park(ParkingDataStore store, String prefix, int count) {
+        String[] numbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = newNumber(prefix);
+            Vehicle v = new Vehicle(numbers[i], VehicleType.CAR, store.getNextFreeSlot(),
+                    DateTimeUtil.now() - TimeUnit.HOURS.toMillis(2), DateTimeUtil.NO_TIME, VehicleStatus.IN);
+            if (!store.addVehicle(v)) {
+                throw new IllegalStateException("No free slot for " + numbers[i]);
+            }
+        }
+        return numbers;
+    }
+    
+    /**
+     * Delete what an earlier trial left in the data directory: the data file with its journal,
+     * previous copies (.prev), interrupted saves (.tmp) and history partitions
+     * Otherwise a trial would replay the last trial's journal on top of its own history
+     */
+    public static void clearDataDirectory() {
+        File dataDir = new File(FileHandler.getDataFilePath()).getParentFile();
+        File[] files = dataDir.listFiles((dir, name) -> name.startsWith("parking_data."));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        deleteTree(new File(dataDir, "history"));
+    }
+    
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}
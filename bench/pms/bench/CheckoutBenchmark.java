@@ -0,0 +1,59 @@
+package pms.bench;
+
+import pms.model.ParkingDataStore;
+import pms.model.Vehicle;
+import pms.util.DateTimeUtil;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checkout latency against history size
+ * Checkout finds the parked record through the vehicle index, so the time per batch
+ * should stay flat from a thousand to ten million history records
+ * Single-shot: each iteration checks out a batch of vehicles parked before it
+ * @author uSer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = BenchData.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = BenchData.BATCH_SIZE)
+@Fork(1)
+public class CheckoutBenchmark {
+    private static final int TOTAL_SLOTS = 1000;
+    
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int historySize;
+    
+    private ParkingDataStore store;
+    private String[] parked;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void loadStore() {
+        // Waits until the history archive is loaded
+        store = BenchData.loadStore(historySize, TOTAL_SLOTS);
+    }
+    
+    @Setup(Level.Iteration)
+    public void parkVehicles() {
+        parked = BenchData.park(store, "CK", BenchData.BATCH_SIZE);
+        next = 0;
+    }
+    
+    @Benchmark
+    public Vehicle checkoutVehicle() {
+        return store.checkoutVehicle(parked[next++], DateTimeUtil.now());
+    }
+}
@@ -0,0 +1,88 @@
+package pms.bench;
+
+import pms.controller.ParkingController;
+import pms.model.ParkingDataStore;
+import pms.model.Vehicle;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the ParkingController operations behind the dashboard and checkout
+ * @author uSer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int historySize;
+    
+    @Param({"50", "1000", "10000"})
+    public int totalSlots;
+    
+    private ParkingDataStore store;
+    private ParkingController controller;
+    
+    @Setup(Level.Trial)
+    public void loadController() {
+        store = BenchData.loadStore(historySize, totalSlots);
+        controller = new ParkingController(store);
+    }
+    
+    /**
+     * Vehicles parked before each iteration of checkoutVehicle, one per call in the batch
+     * Only checkoutVehicle uses this state, so the other benchmarks run on an unchanged lot
+     */
+    @State(Scope.Thread)
+    public static class ParkedVehicles {
+        private String[] numbers;
+        private int next;
+        
+        @Setup(Level.Iteration)
+        public void park(ControllerBenchmark benchmark) {
+            numbers = BenchData.park(benchmark.store, "CO", BenchData.BATCH_SIZE);
+            next = 0;
+        }
+        
+        String next() {
+            return numbers[next++];
+        }
+    }
+    
+    /**
+     * Check out a batch of parked vehicles; each checkout adds one record to the history
+     * Single-shot, so the reported time is for the whole batch
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BenchData.BATCH_SIZE)
+    @Measurement(iterations = 20, batchSize = BenchData.BATCH_SIZE)
+    public double checkoutVehicle(ParkedVehicles parked) {
+        return controller.checkoutVehicle(parked.next());
+    }
+    
+    @Benchmark
+    public double getTotalEarnings() {
+        return controller.getTotalEarnings();
+    }
+    
+    @Benchmark
+    public ArrayList<Vehicle> getLastNEntries() {
+        return controller.getLastNEntries(5);
+    }
+}
@@ -0,0 +1,55 @@
+package pms.bench;
+
+import pms.model.Vehicle;
+import pms.util.FileHandler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for saving and loading the data file
+ * Single-shot: each iteration writes or reads the whole file once
+ * @author uSer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileHandlerBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int historySize;
+    
+    private ArrayList<Vehicle> vehicles;
+    private File dataFile;
+    
+    @Setup
+    public void generate() {
+        BenchData.clearDataDirectory();
+        vehicles = BenchData.history(historySize, 50);
+        FileHandler.saveVehiclesToFile(vehicles);
+        dataFile = new File(FileHandler.getDataFilePath());
+    }
+    
+    @Benchmark
+    public boolean saveVehiclesToFile() {
+        return FileHandler.saveVehiclesToFile(vehicles);
+    }
+    
+    @Benchmark
+    public ArrayList<Vehicle> loadVehiclesFromFile() {
+        return FileHandler.loadVehiclesFromFile(dataFile);
+    }
+}
@@ -0,0 +1,100 @@
+package pms.bench;
+
+import pms.model.ParkingDataStore;
+import pms.model.Vehicle;
+import pms.model.VehicleStatus;
+import pms.model.VehicleType;
+import pms.util.DateTimeUtil;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for ParkingDataStore writes and lookups
+ * @author uSer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int historySize;
+    
+    @Param({"50", "1000", "10000"})
+    public int totalSlots;
+    
+    private ParkingDataStore store;
+    private int lookups;
+    
+    @Setup(Level.Trial)
+    public void loadStore() {
+        store = BenchData.loadStore(historySize, totalSlots);
+    }
+    
+    /**
+     * Vehicles for one iteration of addVehicle, each in a free slot of its own
+     * They are deleted again after the iteration, so the history size stays fixed
+     */
+    @State(Scope.Thread)
+    public static class NewVehicles {
+        private Vehicle[] vehicles;
+        private int next;
+        
+        @Setup(Level.Iteration)
+        public void prepare(StoreBenchmark benchmark) {
+            ArrayList<Integer> freeSlots = benchmark.store.getAvailableSlotNumbers();
+            if (freeSlots.size() < BenchData.BATCH_SIZE) {
+                throw new IllegalStateException("Fewer free slots than the batch size");
+            }
+            vehicles = new Vehicle[BenchData.BATCH_SIZE];
+            for (int i = 0; i < vehicles.length; i++) {
+                vehicles[i] = new Vehicle(BenchData.newNumber("NEW"), VehicleType.CAR, freeSlots.get(i),
+                        DateTimeUtil.now(), DateTimeUtil.NO_TIME, VehicleStatus.IN);
+            }
+            next = 0;
+        }
+        
+        @TearDown(Level.Iteration)
+        public void remove(StoreBenchmark benchmark) {
+            for (Vehicle v : vehicles) {
+                benchmark.store.deleteRecord(v);
+            }
+        }
+        
+        Vehicle next() {
+            return vehicles[next++];
+        }
+    }
+    
+    /**
+     * Park a batch of vehicles; single-shot, so the reported time is for the whole batch
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BenchData.BATCH_SIZE)
+    @Measurement(iterations = 20, batchSize = BenchData.BATCH_SIZE)
+    public boolean addVehicle(NewVehicles newVehicles) {
+        return store.addVehicle(newVehicles.next());
+    }
+    
+    @Benchmark
+    public Vehicle getVehicleByNumber() {
+        lookups = (lookups + 1) % BenchData.distinctPlates(historySize);
+        return store.getVehicleByNumber(BenchData.plate(lookups));
+    }
+}
@@ -0,0 +1,67 @@
+package pms.bench;
+
+import pms.model.Vehicle;
+import pms.util.DateTimeUtil;
+import pms.util.FeeCalculator;
+import pms.util.Validator;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for FeeCalculator and Validator
+ * @author uSer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int historySize;
+    
+    private ArrayList<Vehicle> vehicles;
+    private long entryTime;
+    private long exitTime;
+    private String entryText;
+    private String exitText;
+    
+    @Setup
+    public void generate() {
+        vehicles = BenchData.history(historySize, 50);
+        exitTime = DateTimeUtil.now();
+        entryTime = exitTime - TimeUnit.MINUTES.toMillis(150);
+        entryText = DateTimeUtil.format(entryTime);
+        exitText = DateTimeUtil.format(exitTime);
+    }
+    
+    @Benchmark
+    public double calculateFee() {
+        return FeeCalculator.calculateFee(entryTime, exitTime);
+    }
+    
+    @Benchmark
+    public double calculateFeeFromText() {
+        return FeeCalculator.calculateFee(entryText, exitText);
+    }
+    
+    /**
+     * Worst case: the number is not parked, so every record is checked
+     */
+    @Benchmark
+    public boolean isDuplicateVehicle() {
+        return Validator.isDuplicateVehicle("NOTPARKED1", vehicles);
+    }
+}
@@ -28,12 +28,24 @@ public class ParkingManagementSystem {
             java.util.logging.Logger.getLogger(ParkingManagementSystem.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
         }
         
+        /* Publish metrics if enabled with -Dpms.metrics.file or -Dpms.metrics.port */
+        pms.metrics.MetricsExporter.startFromSystemProperties();
+        
         /* Create and display the login frame */
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
                 new pms.view.LoginFrame().setVisible(true);
             }
         });
+        
+        /* Restore the current parking state while the user logs in; history follows in the background */
+        Thread startup = new Thread(new Runnable() {
+            public void run() {
+                pms.controller.ParkingController.getInstance();
+            }
+        }, "pms-startup");
+        startup.setDaemon(true);
+        startup.start();
     }
     
 }
@@ -1,14 +1,20 @@
 package pms.controller;
 
+import pms.jfr.CheckInEvent;
+import pms.jfr.CheckoutEvent;
+import pms.jfr.DeleteEvent;
+import pms.metrics.Gauge;
+import pms.metrics.Metrics;
+import pms.metrics.MetricsRegistry;
 import pms.model.*;
 import pms.util.Validator;
+import pms.util.DateTimeUtil;
 import pms.util.FeeCalculator;
 import pms.view.*;
 import javax.swing.JFrame;
 import java.util.ArrayList;
 import java.util.List;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.function.Predicate;
 
 /**
  * Controller class - Connects views and models
@@ -17,7 +23,7 @@ import java.util.Date;
  * @author uSer
  */
 public class ParkingController {
-    private static ParkingController instance;
+    private static volatile ParkingController instance;
     private ParkingDataStore dataStore;
     
     /**
@@ -25,6 +31,43 @@ public class ParkingController {
      */
     private ParkingController() {
         this.dataStore = new ParkingDataStore();
+        registerGauges();
+        
+        // Journal entries still queued when the JVM stops are written and synced
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dataStore.flushJournal();
+            }
+        }, "pms-journal-flush"));
+    }
+    
+    /**
+     * Create a controller over a given data store
+     * For headless tools and benchmarks; the UI uses getInstance()
+     * @param dataStore Data store to use
+     */
+    public ParkingController(ParkingDataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+    
+    /**
+     * Expose the slot figures of the application's data store as metrics
+     */
+    private void registerGauges() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.gauge("slots_total", "Parking slots", new Gauge() {
+            @Override
+            public long getValue() {
+                return dataStore.getTotalSlots();
+            }
+        });
+        registry.gauge("slots_occupied", "Parking slots in use", new Gauge() {
+            @Override
+            public long getValue() {
+                return dataStore.getOccupiedSlots();
+            }
+        });
     }
     
     /**
@@ -32,10 +75,17 @@ public class ParkingController {
      * @return The single instance of ParkingController
      */
     public static ParkingController getInstance() {
-        if (instance == null) {
-            instance = new ParkingController();
+        ParkingController result = instance;
+        if (result == null) {
+            synchronized (ParkingController.class) {
+                result = instance;
+                if (result == null) {
+                    result = new ParkingController();
+                    instance = result;
+                }
+            }
         }
-        return instance;
+        return result;
     }
     
     /**
@@ -89,7 +139,7 @@ public class ParkingController {
     }
     
     /**
-     * Add a vehicle and save to file
+     * Add a vehicle (the data store records it in the journal)
      * @param vehicle Vehicle to add
      * @return true if successful, false otherwise
      */
@@ -97,15 +147,28 @@ public class ParkingController {
         if (vehicle == null) {
             return false;
         }
-        boolean success = dataStore.addVehicle(vehicle);
-        if (success) {
-            dataStore.saveVehiclesToFile(); // Save to file after adding
+        CheckInEvent event = new CheckInEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean added = dataStore.addVehicle(vehicle);
+        Metrics.CHECK_IN_LATENCY.recordSince(start);
+        if (added) {
+            Metrics.CHECK_INS.increment();
+        } else {
+            Metrics.CHECK_IN_FAILURES.increment();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.plate = vehicle.getVehicleNumber();
+            event.slot = vehicle.getSlotNumber();
+            event.success = added;
+            event.commit();
         }
-        return success;
+        return added;
     }
     
     /**
-     * Update a vehicle and save to file
+     * Update a vehicle (the data store records it in the journal)
      * @param vehicleNumber Vehicle number to update
      * @param updatedVehicle Updated vehicle object
      * @return true if successful, false otherwise
@@ -114,15 +177,11 @@ public class ParkingController {
         if (vehicleNumber == null || updatedVehicle == null) {
             return false;
         }
-        boolean success = dataStore.updateVehicle(vehicleNumber, updatedVehicle);
-        if (success) {
-            dataStore.saveVehiclesToFile(); // Save to file after updating
-        }
-        return success;
+        return dataStore.updateVehicle(vehicleNumber, updatedVehicle);
     }
     
     /**
-     * Delete a vehicle and save to file
+     * Delete a vehicle (the data store records it in the journal)
      * @param vehicleNumber Vehicle number to delete
      * @return true if successful, false otherwise
      */
@@ -130,21 +189,69 @@ public class ParkingController {
         if (vehicleNumber == null) {
             return false;
         }
-        boolean success = dataStore.deleteVehicle(vehicleNumber);
-        if (success) {
-            dataStore.saveVehiclesToFile(); // Save to file after deleting
+        
+        DeleteEvent event = new DeleteEvent();
+        Vehicle existing = event.isEnabled() ? dataStore.getVehicleByNumber(vehicleNumber) : null;
+        event.begin();
+        boolean deleted = dataStore.deleteVehicle(vehicleNumber);
+        event.end();
+        if (event.shouldCommit()) {
+            event.plate = vehicleNumber;
+            event.slot = existing != null ? existing.getSlotNumber() : -1;
+            event.success = deleted;
+            event.commit();
+        }
+        return deleted;
+    }
+    
+    /**
+     * Delete one particular vehicle record, e.g. an older visit picked from the vehicle list
+     * @param record Record to delete, as returned by this controller
+     * @return true if successful, false if the record is archived or already deleted
+     */
+    public boolean deleteRecord(Vehicle record) {
+        if (record == null) {
+            return false;
+        }
+        
+        DeleteEvent event = new DeleteEvent();
+        event.begin();
+        boolean deleted = dataStore.deleteRecord(record);
+        event.end();
+        if (event.shouldCommit()) {
+            event.plate = record.getVehicleNumber();
+            event.slot = record.getSlotNumber();
+            event.success = deleted;
+            event.commit();
         }
-        return success;
+        return deleted;
     }
     
     /**
-     * Save all vehicles to file (can be called on exit)
+     * Save all vehicles to file as a compacted snapshot (can be called on exit)
      * @return true if saved successfully, false otherwise
      */
     public boolean saveAllData() {
         return dataStore.saveVehiclesToFile();
     }
     
+    /**
+     * Save a final snapshot and stop the persistence threads (call once, on exit)
+     * @return true if saved successfully, false otherwise
+     */
+    public boolean shutdown() {
+        return dataStore.close();
+    }
+    
+    /**
+     * Check if the parking history has finished loading in the background
+     * Until then, searches, reports and the total earnings leave out archived records
+     * @return true once the history is loaded
+     */
+    public boolean isHistoryLoaded() {
+        return dataStore.isHistoryLoaded();
+    }
+    
     /**
      * Get all vehicles
      * @return List of all vehicles
@@ -153,6 +260,16 @@ public class ParkingController {
         return dataStore.getAllVehicles();
     }
     
+    /**
+     * Find vehicles matching a filter with one scan over all records
+     * Archived records are tested in place and only matches are copied
+     * @param filter Filter to apply to each record
+     * @return Matching vehicles, archived ones first
+     */
+    public ArrayList<Vehicle> findVehicles(Predicate<? super VehicleRecord> filter) {
+        return dataStore.findVehicles(filter);
+    }
+    
     /**
      * Get vehicle by vehicle number
      * @param vehicleNumber Vehicle number to search
@@ -162,6 +279,30 @@ public class ParkingController {
         return dataStore.getVehicleByNumber(vehicleNumber);
     }
     
+    /**
+     * Search vehicles by partial vehicle number using the plate index
+     * @param query Partial vehicle number (case-insensitive)
+     * @return Vehicles whose number contains the query
+     */
+    public ArrayList<Vehicle> searchVehiclesByNumber(String query) {
+        long start = System.nanoTime();
+        ArrayList<Vehicle> result = dataStore.searchByVehicleNumber(query, false);
+        Metrics.SEARCH_LATENCY.recordSince(start);
+        return result;
+    }
+    
+    /**
+     * Search vehicles by vehicle number prefix using the plate index
+     * @param prefix Start of the vehicle number (case-insensitive)
+     * @return Vehicles whose number starts with the prefix
+     */
+    public ArrayList<Vehicle> searchVehiclesByNumberPrefix(String prefix) {
+        long start = System.nanoTime();
+        ArrayList<Vehicle> result = dataStore.searchByVehicleNumber(prefix, true);
+        Metrics.SEARCH_LATENCY.recordSince(start);
+        return result;
+    }
+    
     /**
      * Get total number of slots
      * @return Total slots
@@ -200,11 +341,15 @@ public class ParkingController {
      * @return List of available slot numbers
      */
     public List<Integer> getAvailableSlotNumbers() {
-        List<Integer> availableSlots = new ArrayList<>();
-        for (ParkingSlot slot : dataStore.getAvailableSlots()) {
-            availableSlots.add(slot.getSlotNumber());
-        }
-        return availableSlots;
+        return dataStore.getAvailableSlotNumbers();
+    }
+    
+    /**
+     * Get the next free slot number
+     * @return Lowest free slot number, or -1 if the parking is full
+     */
+    public int getNextFreeSlot() {
+        return dataStore.getNextFreeSlot();
     }
     
     /**
@@ -222,7 +367,10 @@ public class ParkingController {
      * @return true if duplicate, false otherwise
      */
     public boolean isDuplicateVehicle(String vehicleNumber) {
-        return Validator.isDuplicateVehicle(vehicleNumber, dataStore.getAllVehicles());
+        if (Validator.isEmpty(vehicleNumber)) {
+            return false;
+        }
+        return dataStore.containsVehicleNumber(vehicleNumber);
     }
     
     /**
@@ -232,7 +380,24 @@ public class ParkingController {
      * @return true if duplicate, false otherwise
      */
     public boolean isDuplicateVehicle(String vehicleNumber, String excludeVehicleNumber) {
-        return Validator.isDuplicateVehicle(vehicleNumber, excludeVehicleNumber, dataStore.getAllVehicles());
+        if (Validator.isEmpty(vehicleNumber)) {
+            return false;
+        }
+        // Renaming a vehicle to its own number is never a duplicate
+        if (excludeVehicleNumber != null
+                && Validator.normalizeVehicleNumber(vehicleNumber).equals(Validator.normalizeVehicleNumber(excludeVehicleNumber))) {
+            return false;
+        }
+        return dataStore.containsVehicleNumber(vehicleNumber);
+    }
+    
+    /**
+     * Validate a date-time string
+     * @param dateTime Date-time string to validate
+     * @return true if it matches yyyy-MM-dd HH:mm:ss, false otherwise
+     */
+    public boolean isValidDateTime(String dateTime) {
+        return DateTimeUtil.isValid(dateTime);
     }
     
     /**
@@ -246,45 +411,31 @@ public class ParkingController {
     
     /**
      * Get vehicles parked today
-     * @return List of vehicles with entry time matching today's date
+     * @return List of vehicles with entry time matching today's date, in entry time order
      */
     public ArrayList<Vehicle> getTodayVehicles() {
-        ArrayList<Vehicle> todayVehicles = new ArrayList<>();
-        java.text.SimpleDateFormat dateFormat = new java.text.SimpleDateFormat("yyyy-MM-dd");
-        String today = dateFormat.format(new java.util.Date());
-        
-        for (Vehicle v : dataStore.getAllVehicles()) {
-            if (v.getEntryTime() != null && v.getEntryTime().startsWith(today)) {
-                todayVehicles.add(v);
-            }
-        }
-        return todayVehicles;
+        long now = System.currentTimeMillis();
+        return dataStore.getEntriesBetween(DateTimeUtil.startOfDay(now), DateTimeUtil.startOfNextDay(now));
+    }
+    
+    /**
+     * Get vehicles that entered in a time range (e.g. between 08:00 and 09:00)
+     * @param fromMillis Start of the range (inclusive)
+     * @param toMillis End of the range (exclusive)
+     * @return List of vehicles in entry time order
+     */
+    public ArrayList<Vehicle> getEntriesBetween(long fromMillis, long toMillis) {
+        return dataStore.getEntriesBetween(fromMillis, toMillis);
     }
     
     /**
      * Get last N vehicle entries (most recent first)
+     * Read from the entry time index, so the history is never sorted
      * @param n Number of recent entries to return
      * @return List of last N vehicles sorted by entry time (most recent first)
      */
     public ArrayList<Vehicle> getLastNEntries(int n) {
-        ArrayList<Vehicle> allVehicles = dataStore.getAllVehicles();
-        ArrayList<Vehicle> sorted = new ArrayList<>(allVehicles);
-        
-        // Sort by entry time descending (most recent first)
-        java.util.Collections.sort(sorted, new java.util.Comparator<Vehicle>() {
-            @Override
-            public int compare(Vehicle v1, Vehicle v2) {
-                return v2.getEntryTime().compareTo(v1.getEntryTime());
-            }
-        });
-        
-        // Return first N entries
-        ArrayList<Vehicle> result = new ArrayList<>();
-        int count = Math.min(n, sorted.size());
-        for (int i = 0; i < count; i++) {
-            result.add(sorted.get(i));
-        }
-        return result;
+        return dataStore.getLatestEntries(n);
     }
     
     /**
@@ -297,35 +448,43 @@ public class ParkingController {
             return -1;
         }
         
-        Vehicle vehicle = dataStore.getVehicleByNumber(vehicleNumber);
-        if (vehicle == null) {
-            return -1;
-        }
+        // Set exit time to current time
+        long exitTime = DateTimeUtil.now();
         
-        // Check if already checked out
-        if ("OUT".equals(vehicle.getStatus())) {
+        // Set status to OUT and free up the slot; fails if not found or already checked out
+        CheckoutEvent event = new CheckoutEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Vehicle vehicle = dataStore.checkoutVehicle(vehicleNumber, exitTime);
+        Metrics.CHECKOUT_LATENCY.recordSince(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.plate = vehicleNumber;
+            event.slot = vehicle != null ? vehicle.getSlotNumber() : -1;
+            event.feeCents = vehicle != null ? vehicle.getFeeCents() : 0L;
+            event.success = vehicle != null;
+            event.commit();
+        }
+        if (vehicle == null) {
             return -1;
         }
+        Metrics.CHECKOUTS.increment();
         
-        // Set exit time to current time
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        String exitTime = sdf.format(new Date());
-        vehicle.setExitTime(exitTime);
-        vehicle.setStatus("OUT");
-        
-        // Free up the slot
-        ParkingSlot slot = dataStore.getSlotByNumber(vehicle.getSlotNumber());
-        if (slot != null) {
-            slot.setOccupied(false);
+        // Fee was computed and stored by the data store
+        return vehicle.getFee();
+    }
+    
+    /**
+     * Record payment of a checked-out vehicle's fee
+     * @param vehicleNumber Vehicle number that was checked out
+     * @param paymentMethod Payment method chosen in the payment dialog
+     * @return true if recorded, false otherwise
+     */
+    public boolean recordPayment(String vehicleNumber, String paymentMethod) {
+        if (vehicleNumber == null || Validator.isEmpty(paymentMethod)) {
+            return false;
         }
-        
-        // Calculate fee
-        double fee = FeeCalculator.calculateFee(vehicle.getEntryTime(), exitTime);
-        
-        // Save to file
-        dataStore.saveVehiclesToFile();
-        
-        return fee;
+        return dataStore.recordPayment(vehicleNumber, paymentMethod, DateTimeUtil.now());
     }
     
     /**
@@ -338,18 +497,20 @@ public class ParkingController {
             return -1;
         }
         
+        long start = System.nanoTime();
         Vehicle vehicle = dataStore.getVehicleByNumber(vehicleNumber);
+        double fee;
         if (vehicle == null) {
-            return -1;
-        }
-        
-        if ("OUT".equals(vehicle.getStatus()) && vehicle.getExitTime() != null) {
-            // Vehicle is checked out - calculate actual fee
-            return FeeCalculator.calculateFee(vehicle.getEntryTime(), vehicle.getExitTime());
+            fee = -1;
+        } else if (vehicle.getStatus() == VehicleStatus.OUT && vehicle.hasExitTime()) {
+            // Vehicle is checked out - use the fee stored at checkout
+            fee = vehicle.getFee();
         } else {
             // Vehicle is still in - calculate fee to now (estimate)
-            return FeeCalculator.calculateFeeToNow(vehicle.getEntryTime());
+            fee = FeeCalculator.calculateFeeToNow(vehicle.getEntryTimeMillis());
         }
+        Metrics.FEE_LATENCY.recordSince(start);
+        return fee;
     }
     
     /**
@@ -357,19 +518,8 @@ public class ParkingController {
      * @return Today's total earnings
      */
     public double getTodayEarnings() {
-        double totalEarnings = 0.0;
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String today = dateFormat.format(new Date());
-        
-        for (Vehicle v : dataStore.getAllVehicles()) {
-            // Only count checked-out vehicles that were checked out today
-            if ("OUT".equals(v.getStatus()) && v.getExitTime() != null && v.getExitTime().startsWith(today)) {
-                double fee = FeeCalculator.calculateFee(v.getEntryTime(), v.getExitTime());
-                totalEarnings += fee;
-            }
-        }
-        
-        return Math.round(totalEarnings * 100.0) / 100.0;
+        // Read from the running totals instead of rescanning history
+        return dataStore.getEarningsLedger().getTodayCents() / 100.0;
     }
     
     /**
@@ -377,52 +527,74 @@ public class ParkingController {
      * @return Total earnings
      */
     public double getTotalEarnings() {
-        double totalEarnings = 0.0;
-        
-        for (Vehicle v : dataStore.getAllVehicles()) {
-            // Only count checked-out vehicles
-            if ("OUT".equals(v.getStatus()) && v.getExitTime() != null) {
-                double fee = FeeCalculator.calculateFee(v.getEntryTime(), v.getExitTime());
-                totalEarnings += fee;
-            }
-        }
-        
-        return Math.round(totalEarnings * 100.0) / 100.0;
+        return dataStore.getEarningsLedger().getTotalCents() / 100.0;
+    }
+    
+    /**
+     * Calculate earnings from vehicles checked out on a given day
+     * @param epochMillis Any time on the day
+     * @return Earnings for that day
+     */
+    public double getEarningsForDay(long epochMillis) {
+        return dataStore.getEarningsLedger().getDayCents(epochMillis) / 100.0;
+    }
+    
+    /**
+     * Calculate earnings from vehicles checked out in a given hour
+     * @param epochMillis Any time in the hour
+     * @return Earnings for that hour
+     */
+    public double getEarningsForHour(long epochMillis) {
+        return dataStore.getEarningsLedger().getHourCents(epochMillis) / 100.0;
+    }
+    
+    /**
+     * Calculate earnings from checked-out vehicles of one type
+     * @param vehicleType Vehicle type
+     * @return Earnings for that vehicle type
+     */
+    public double getEarningsByVehicleType(VehicleType vehicleType) {
+        return dataStore.getEarningsLedger().getTypeCents(vehicleType) / 100.0;
     }
     
     /**
      * Get vehicle-wise earnings breakdown
+     * Records are filtered before they are copied, so archived records are not copied twice
      * @return List of vehicles with their earnings (only checked-out vehicles)
      */
     public ArrayList<VehicleEarning> getVehicleEarnings() {
         ArrayList<VehicleEarning> earnings = new ArrayList<>();
         
-        for (Vehicle v : dataStore.getAllVehicles()) {
-            // Only include checked-out vehicles
-            if ("OUT".equals(v.getStatus()) && v.getExitTime() != null) {
-                double fee = FeeCalculator.calculateFee(v.getEntryTime(), v.getExitTime());
-                VehicleEarning earning = new VehicleEarning(v, fee);
-                earnings.add(earning);
-            }
+        // Only include checked-out vehicles
+        for (Vehicle v : dataStore.findVehicles(r -> r.getStatus() == VehicleStatus.OUT && r.getExitTimeMillis() != DateTimeUtil.NO_TIME)) {
+            earnings.add(new VehicleEarning(v, v.getFee()));
         }
         
         return earnings;
     }
     
+    /**
+     * Get the checked-out records behind the earnings breakdown, to be read a page at a time
+     * Archived records stay on disk until a page holding them is read
+     * @param todayOnly true for only the vehicles checked out today
+     * @return Snapshot of the checked-out records
+     */
+    public CheckedOutRecords getCheckedOutRecords(boolean todayOnly) {
+        return todayOnly ? dataStore.getTodayCheckedOutRecords() : dataStore.getCheckedOutRecords();
+    }
+    
     /**
      * Get today's vehicle-wise earnings
      * @return List of vehicles checked out today with their earnings
      */
     public ArrayList<VehicleEarning> getTodayVehicleEarnings() {
         ArrayList<VehicleEarning> earnings = new ArrayList<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String today = dateFormat.format(new Date());
         
-        for (Vehicle v : dataStore.getAllVehicles()) {
+        // Records checked out before today are archived, so only the unarchived set is read
+        for (Vehicle v : dataStore.getUnarchivedVehicles()) {
             // Only include vehicles checked out today
-            if ("OUT".equals(v.getStatus()) && v.getExitTime() != null && v.getExitTime().startsWith(today)) {
-                double fee = FeeCalculator.calculateFee(v.getEntryTime(), v.getExitTime());
-                VehicleEarning earning = new VehicleEarning(v, fee);
+            if (v.getStatus() == VehicleStatus.OUT && DateTimeUtil.isToday(v.getExitTimeMillis())) {
+                VehicleEarning earning = new VehicleEarning(v, v.getFee());
                 earnings.add(earning);
             }
         }
@@ -0,0 +1,28 @@
+package pms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a vehicle check-in (ParkingController.addVehicle)
+ * @author uSer
+ */
+@Name("pms.CheckIn")
+@Label("Vehicle Check-In")
+@Description("Vehicle added at the gate, including the journal write")
+@Category({"Parking Management", "Gate"})
+@StackTrace(false)
+public class CheckInEvent extends jdk.jfr.Event {
+    @Label("Vehicle Number")
+    public String plate;
+    
+    @Label("Slot")
+    public int slot;
+    
+    @Label("Succeeded")
+    @Description("false if the vehicle was already parked or the slot was taken")
+    public boolean success;
+}
@@ -0,0 +1,32 @@
+package pms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a vehicle checkout (ParkingController.checkoutVehicle)
+ * @author uSer
+ */
+@Name("pms.Checkout")
+@Label("Vehicle Checkout")
+@Description("Vehicle checked out at the gate, including fee calculation and the journal write")
+@Category({"Parking Management", "Gate"})
+@StackTrace(false)
+public class CheckoutEvent extends jdk.jfr.Event {
+    @Label("Vehicle Number")
+    public String plate;
+    
+    @Label("Slot")
+    @Description("Slot freed, -1 if the checkout failed")
+    public int slot;
+    
+    @Label("Fee (cents)")
+    public long feeCents;
+    
+    @Label("Succeeded")
+    @Description("false if the vehicle was not found or already checked out")
+    public boolean success;
+}
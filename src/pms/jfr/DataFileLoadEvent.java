@@ -0,0 +1,37 @@
+package pms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for reading a data file (FileHandler.loadVehiclesFromFile)
+ * @author uSer
+ */
+@Name("pms.DataFileLoad")
+@Label("Data File Load")
+@Description("Read and parse of a vehicle data file")
+@Category({"Parking Management", "Persistence"})
+public class DataFileLoadEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+    
+    @Label("Records")
+    public int records;
+    
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytes;
+    
+    @Label("Parse Chunks")
+    @Description("Chunks parsed in parallel, 1 if parsed on the loading thread")
+    public int chunks;
+    
+    @Label("Throughput")
+    @DataAmount
+    @Frequency
+    public long bytesPerSecond;
+}
@@ -0,0 +1,31 @@
+package pms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a full rewrite of the data file (FileHandler.saveVehiclesToFile)
+ * Keeps its stack trace so a recording shows whether a save or a journal compaction caused it
+ * @author uSer
+ */
+@Name("pms.DataFileSave")
+@Label("Data File Save")
+@Description("Full rewrite of the vehicle data file")
+@Category({"Parking Management", "Persistence"})
+public class DataFileSaveEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+    
+    @Label("Records")
+    public int records;
+    
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+    
+    @Label("Succeeded")
+    public boolean success;
+}
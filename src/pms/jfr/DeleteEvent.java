@@ -0,0 +1,28 @@
+package pms.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for deleting a vehicle record (ParkingController.deleteVehicle)
+ * @author uSer
+ */
+@Name("pms.Delete")
+@Label("Vehicle Delete")
+@Description("Vehicle record deleted, including the journal write")
+@Category({"Parking Management", "Gate"})
+@StackTrace(false)
+public class DeleteEvent extends jdk.jfr.Event {
+    @Label("Vehicle Number")
+    public String plate;
+    
+    @Label("Slot")
+    @Description("Slot of the deleted record, -1 if unknown")
+    public int slot;
+    
+    @Label("Succeeded")
+    public boolean success;
+}
@@ -0,0 +1,44 @@
+package pms.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic event counter, safe to increment from any thread without allocating
+ * @author uSer
+ */
+public class Counter {
+    private final String name;
+    private final String help;
+    private final LongAdder count;
+    
+    // Constructor
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+        this.count = new LongAdder();
+    }
+    
+    public void increment() {
+        count.increment();
+    }
+    
+    /**
+     * Add to the counter
+     * @param amount Non-negative amount
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+    
+    public long get() {
+        return count.sum();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getHelp() {
+        return help;
+    }
+}
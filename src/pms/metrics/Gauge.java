@@ -0,0 +1,13 @@
+package pms.metrics;
+
+/**
+ * Current value read when metrics are displayed or dumped (e.g. occupied slots)
+ * @author uSer
+ */
+public interface Gauge {
+    /**
+     * Read the current value
+     * @return Gauge value
+     */
+    long getValue();
+}
@@ -0,0 +1,134 @@
+package pms.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in nanoseconds (HDR-style)
+ * Values below 32 get their own bucket; above that every power of two is split into
+ * 16 buckets, so any recorded value is reported within about 6%
+ * Recording is lock-free and allocation-free
+ * @author uSer
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final String name;
+    private final String help;
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+    
+    // Constructor
+    LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+    
+    /**
+     * Record one duration
+     * @param nanos Duration in nanoseconds (negative values count as 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+    
+    /**
+     * Record the time elapsed since a System.nanoTime() reading
+     * @param startNanos Value of System.nanoTime() when the operation started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    private static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    /**
+     * Get the largest value that falls into a bucket
+     */
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+    
+    /**
+     * Get a percentile of the recorded values
+     * Reads the buckets without stopping writers, so the result may miss values recorded meanwhile
+     * @param percentile Percentile between 0 and 100
+     * @return Upper bound of the bucket holding the percentile in nanoseconds, 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    /**
+     * Get the sum of all recorded values
+     * @return Sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+    
+    /**
+     * Get the largest recorded value
+     * @return Maximum in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getHelp() {
+        return help;
+    }
+}
@@ -0,0 +1,33 @@
+package pms.metrics;
+
+/**
+ * The metrics recorded by the application, registered in MetricsRegistry
+ * Hot paths use these fields directly so recording never looks anything up
+ * @author uSer
+ */
+public final class Metrics {
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.getInstance();
+    
+    // Vehicle operations (ParkingController)
+    public static final LatencyHistogram CHECK_IN_LATENCY = REGISTRY.histogram("checkin_latency", "Time to add (check in) a vehicle");
+    public static final Counter CHECK_INS = REGISTRY.counter("checkins", "Vehicles checked in");
+    public static final Counter CHECK_IN_FAILURES = REGISTRY.counter("checkin_failures", "Check-ins rejected (duplicate, slot taken)");
+    public static final LatencyHistogram CHECKOUT_LATENCY = REGISTRY.histogram("checkout_latency", "Time to check out a vehicle");
+    public static final Counter CHECKOUTS = REGISTRY.counter("checkouts", "Vehicles checked out");
+    public static final LatencyHistogram FEE_LATENCY = REGISTRY.histogram("fee_calculation_latency", "Time to calculate a vehicle's fee");
+    public static final LatencyHistogram SEARCH_LATENCY = REGISTRY.histogram("search_latency", "Time to search vehicles by number");
+    
+    // Persistence (FileHandler)
+    public static final LatencyHistogram SAVE_LATENCY = REGISTRY.histogram("save_latency", "Time to write the data file");
+    public static final Counter SAVES = REGISTRY.counter("saves", "Data file writes");
+    public static final Counter BYTES_WRITTEN = REGISTRY.counter("bytes_written", "Bytes written to the data file and journal");
+    public static final LatencyHistogram LOAD_LATENCY = REGISTRY.histogram("load_latency", "Time to read the data file");
+    public static final Counter BYTES_READ = REGISTRY.counter("bytes_read", "Bytes read from data files (throughput: bytes_read / load_latency)");
+    public static final Counter RECORDS_READ = REGISTRY.counter("records_read", "Records read from data files");
+    public static final Counter JOURNAL_APPENDS = REGISTRY.counter("journal_appends", "Journal entries written");
+    public static final Counter JOURNAL_BATCHES = REGISTRY.counter("journal_batches", "Journal writes (group commits)");
+    public static final LatencyHistogram JOURNAL_SYNC_LATENCY = REGISTRY.histogram("journal_sync_latency", "Time to fsync the journal");
+    
+    private Metrics() {
+    }
+}
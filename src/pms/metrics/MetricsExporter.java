@@ -0,0 +1,132 @@
+package pms.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the metrics text dump for scraping
+ * -Dpms.metrics.file=PATH rewrites PATH every pms.metrics.interval seconds (default 10)
+ * -Dpms.metrics.port=PORT serves http://localhost:PORT/metrics on the loopback interface only
+ * @author uSer
+ */
+public class MetricsExporter {
+    private static final long DEFAULT_INTERVAL_SECONDS = 10;
+    
+    private MetricsExporter() {
+    }
+    
+    /**
+     * Start the exporters enabled by system properties (does nothing if none are set)
+     */
+    public static void startFromSystemProperties() {
+        String path = System.getProperty("pms.metrics.file");
+        if (path != null && !path.isEmpty()) {
+            long interval = Long.getLong("pms.metrics.interval", DEFAULT_INTERVAL_SECONDS);
+            startFileExporter(new File(path), Math.max(1L, interval));
+        }
+        
+        Integer port = Integer.getInteger("pms.metrics.port");
+        if (port != null) {
+            startHttpExporter(port);
+        }
+    }
+    
+    /**
+     * Periodically write the dump to a file, replacing it atomically so readers never see half a dump
+     * @param file File to write
+     * @param intervalSeconds Seconds between writes
+     */
+    public static void startFileExporter(final File file, long intervalSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(daemonThreads("metrics-file"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                writeDump(file);
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Write the dump to a file once
+     * @param file File to write
+     * @return true if written, false otherwise
+     */
+    public static boolean writeDump(File file) {
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        try (Writer writer = new FileWriter(temp, StandardCharsets.UTF_8)) {
+            MetricsRegistry.getInstance().writeText(writer);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics file: " + e.getMessage());
+            temp.delete();
+            return false;
+        }
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // The file system cannot rename atomically; a scraper may briefly find no file
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error replacing metrics file: " + e.getMessage());
+            temp.delete();
+            return false;
+        }
+    }
+    
+    /**
+     * Serve the dump over HTTP on the loopback interface
+     * @param port Port to listen on
+     * @return true if the server started, false otherwise
+     */
+    public static boolean startHttpExporter(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    byte[] body = MetricsRegistry.getInstance().toText().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor(daemonThreads("metrics-http")));
+            server.start();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error starting metrics server on port " + port + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package pms.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry of the application's counters, gauges and latency histograms
+ * Metrics are registered once and kept in fields (see Metrics); only reading them
+ * for display or a dump walks the registry
+ * @author uSer
+ */
+public class MetricsRegistry {
+    private static volatile MetricsRegistry instance;
+    
+    private static final String PREFIX = "pms_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    
+    private final ConcurrentSkipListMap<String, Counter> counters;
+    private final ConcurrentSkipListMap<String, LatencyHistogram> histograms;
+    private final ConcurrentSkipListMap<String, Gauge> gauges;
+    private final ConcurrentHashMap<String, String> gaugeHelp;
+    
+    // Constructor
+    private MetricsRegistry() {
+        this.counters = new ConcurrentSkipListMap<>();
+        this.histograms = new ConcurrentSkipListMap<>();
+        this.gauges = new ConcurrentSkipListMap<>();
+        this.gaugeHelp = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Get the application-wide registry
+     * @return MetricsRegistry instance
+     */
+    public static MetricsRegistry getInstance() {
+        MetricsRegistry result = instance;
+        if (result == null) {
+            synchronized (MetricsRegistry.class) {
+                result = instance;
+                if (result == null) {
+                    instance = result = new MetricsRegistry();
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Get or create a counter
+     * @param name Metric name (lower case, underscores)
+     * @param help One-line description
+     * @return Counter registered under the name
+     */
+    public Counter counter(String name, String help) {
+        return counters.computeIfAbsent(name, k -> new Counter(name, help));
+    }
+    
+    /**
+     * Get or create a latency histogram
+     * @param name Metric name (lower case, underscores)
+     * @param help One-line description
+     * @return Histogram registered under the name
+     */
+    public LatencyHistogram histogram(String name, String help) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram(name, help));
+    }
+    
+    /**
+     * Register a gauge, replacing any gauge with the same name
+     * @param name Metric name (lower case, underscores)
+     * @param help One-line description
+     * @param gauge Gauge to read
+     */
+    public void gauge(String name, String help, Gauge gauge) {
+        gaugeHelp.put(name, help);
+        gauges.put(name, gauge);
+    }
+    
+    /**
+     * Get the current value of every metric as display rows
+     * Each row is {name, description, value}; histograms give count, p50, p99, p999 and max
+     * @return Rows sorted by kind and name
+     */
+    public ArrayList<String[]> snapshot() {
+        ArrayList<String[]> rows = new ArrayList<>();
+        for (Counter c : counters.values()) {
+            rows.add(new String[]{c.getName(), c.getHelp(), String.valueOf(c.get())});
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            rows.add(new String[]{entry.getKey(), gaugeHelp.get(entry.getKey()), String.valueOf(entry.getValue().getValue())});
+        }
+        for (LatencyHistogram h : histograms.values()) {
+            String value = String.format("n=%d  p50=%s  p99=%s  p999=%s  max=%s",
+                    h.getCount(), formatNanos(h.getPercentile(50)), formatNanos(h.getPercentile(99)),
+                    formatNanos(h.getPercentile(99.9)), formatNanos(h.getMax()));
+            rows.add(new String[]{h.getName(), h.getHelp(), value});
+        }
+        return rows;
+    }
+    
+    /**
+     * Write every metric in the Prometheus text exposition format
+     * Histograms are written as summaries in seconds
+     * @param out Writer to append to
+     * @throws IOException If the writer fails
+     */
+    public void writeText(Writer out) throws IOException {
+        for (Counter c : counters.values()) {
+            String name = PREFIX + c.getName() + "_total";
+            writeHeader(out, name, c.getHelp(), "counter");
+            out.write(name + " " + c.get() + "\n");
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            String name = PREFIX + entry.getKey();
+            writeHeader(out, name, gaugeHelp.get(entry.getKey()), "gauge");
+            out.write(name + " " + entry.getValue().getValue() + "\n");
+        }
+        for (LatencyHistogram h : histograms.values()) {
+            String name = PREFIX + h.getName() + "_seconds";
+            writeHeader(out, name, h.getHelp(), "summary");
+            for (double q : QUANTILES) {
+                out.write(name + "{quantile=\"" + q + "\"} " + toSeconds(h.getPercentile(q * 100.0)) + "\n");
+            }
+            out.write(name + "_sum " + toSeconds(h.getSum()) + "\n");
+            out.write(name + "_count " + h.getCount() + "\n");
+        }
+    }
+    
+    /**
+     * Get the text dump as a string
+     * @return Prometheus text format
+     */
+    public String toText() {
+        StringWriter out = new StringWriter();
+        try {
+            writeText(out);
+        } catch (IOException e) {
+            // StringWriter does not throw
+        }
+        return out.toString();
+    }
+    
+    private static void writeHeader(Writer out, String name, String help, String type) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+    
+    private static String toSeconds(long nanos) {
+        return String.valueOf(nanos / 1e9);
+    }
+    
+    /**
+     * Format a duration for display
+     * @param nanos Duration in nanoseconds
+     * @return Duration in microseconds or milliseconds
+     */
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000_000L) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        return String.format("%.2fms", nanos / 1e6);
+    }
+}
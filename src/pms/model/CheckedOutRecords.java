@@ -0,0 +1,75 @@
+package pms.model;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Checked-out vehicle records as of one moment, read a range at a time
+ * Archived records are left in their partitions and copied to Vehicle objects only
+ * for the ranges asked for, so a report table can page through the whole history
+ * Archived records come first, in exit day order, then the unarchived ones in insertion order
+ * @author uSer
+ */
+public class CheckedOutRecords {
+    private final HistoryArchive.Snapshot archived; // null when only unarchived records are included
+    private final ArrayList<Vehicle> recent;
+    
+    // Constructor
+    CheckedOutRecords(HistoryArchive.Snapshot archived, ArrayList<Vehicle> recent) {
+        this.archived = archived;
+        this.recent = recent;
+    }
+    
+    /**
+     * Create an empty set of records
+     * @return Records with no entries
+     */
+    public static CheckedOutRecords empty() {
+        return new CheckedOutRecords(null, new ArrayList<>());
+    }
+    
+    /**
+     * Get the number of records
+     * @return Record count
+     */
+    public long size() {
+        return archivedSize() + recent.size();
+    }
+    
+    /**
+     * Copy a range of records
+     * Entries of an archived partition that cannot be read are null
+     * @param first Number of the first record
+     * @param count Maximum number of records
+     * @return Records from first on, fewer than count at the end
+     */
+    public ArrayList<Vehicle> getRange(long first, int count) {
+        ArrayList<Vehicle> result = new ArrayList<>(count);
+        long archivedSize = archivedSize();
+        if (first < archivedSize) {
+            archived.copyRange(first, count, result);
+        }
+        int from = (int) Math.max(0, first - archivedSize);
+        int to = (int) Math.min(recent.size(), first + count - archivedSize);
+        for (int i = from; i < to; i++) {
+            result.add(recent.get(i));
+        }
+        return result;
+    }
+    
+    /**
+     * Pass every record to an action, in the order they are numbered
+     * Archived records may be flyweight views, valid only during the call
+     * @param action Action to run; copy a record with toVehicle() to keep it
+     */
+    public void forEach(Consumer<? super VehicleRecord> action) {
+        if (archived != null) {
+            archived.forEach(action);
+        }
+        recent.forEach(action);
+    }
+    
+    private long archivedSize() {
+        return archived != null ? archived.size() : 0;
+    }
+}
@@ -0,0 +1,291 @@
+package pms.model;
+
+import pms.util.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Read-only vehicle records stored column by column (struct of arrays)
+ * Times, fees and slots are primitive arrays; type, status and payment method are one-byte
+ * codes into small per-instance tables; plates are ids into a per-instance dictionary, so
+ * each distinct plate is kept once per partition however often it recurs there, and is
+ * released with the partition when its cache is cleared
+ * A record costs about 43 bytes instead of a Vehicle object and its strings, and scans over
+ * entry times or plates are loops over primitive arrays
+ * Records are read through a flyweight view, as with MappedRecordFile
+ * @author uSer
+ */
+public class ColumnarRecords {
+    private static final int MAX_CODES = 256;
+    private static final VehicleStatus[] STATUSES = VehicleStatus.values(); // Indexed by status code
+    
+    private final int count;
+    private final int[] plateIds;
+    private final String[] plates; // Distinct plates, indexed by plate id
+    private final long[] entryTimes;
+    private final long[] exitTimes;
+    private final long[] feeCents;
+    private final long[] paidAtTimes;
+    private final int[] slotNumbers;
+    private final byte[] typeCodes;
+    private final byte[] statusCodes;
+    private final byte[] paymentCodes;
+    private final VehicleType[] types; // Indexed by type code
+    private final String[] paymentMethods; // Indexed by payment code
+    
+    // Constructor
+    private ColumnarRecords(int count, int[] plateIds, String[] plates, byte[] typeCodes, VehicleType[] types,
+            byte[] paymentCodes, String[] paymentMethods) {
+        this.count = count;
+        this.plateIds = plateIds;
+        this.plates = plates;
+        this.entryTimes = new long[count];
+        this.exitTimes = new long[count];
+        this.feeCents = new long[count];
+        this.paidAtTimes = new long[count];
+        this.slotNumbers = new int[count];
+        this.typeCodes = typeCodes;
+        this.statusCodes = new byte[count];
+        this.paymentCodes = paymentCodes;
+        this.types = types;
+        this.paymentMethods = paymentMethods;
+    }
+    
+    /**
+     * Copy records into columns
+     * @param vehicles Records to copy (not kept)
+     * @return Columnar records, or null if they use more distinct types or payment methods than a code can hold
+     */
+    public static ColumnarRecords of(List<Vehicle> vehicles) {
+        VehicleType[] typeTable = new VehicleType[MAX_CODES];
+        String[] paymentTable = new String[MAX_CODES];
+        int typeCount = 0;
+        int paymentCount = 0;
+        byte[] typeCodes = new byte[vehicles.size()];
+        byte[] paymentCodes = new byte[vehicles.size()];
+        HashMap<String, Integer> plateIndex = new HashMap<>();
+        ArrayList<String> plates = new ArrayList<>();
+        int[] plateIds = new int[vehicles.size()];
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle v = vehicles.get(i);
+            Integer plateId = plateIndex.putIfAbsent(v.getVehicleNumber(), plates.size());
+            if (plateId == null) {
+                plateId = plates.size();
+                plates.add(v.getVehicleNumber());
+            }
+            plateIds[i] = plateId;
+            int typeCode = indexOf(typeTable, typeCount, v.getVehicleType());
+            if (typeCode == typeCount) {
+                if (typeCount == MAX_CODES) {
+                    return null;
+                }
+                typeTable[typeCount++] = v.getVehicleType();
+            }
+            int paymentCode = indexOf(paymentTable, paymentCount, v.getPaymentMethod());
+            if (paymentCode == paymentCount) {
+                if (paymentCount == MAX_CODES) {
+                    return null;
+                }
+                paymentTable[paymentCount++] = v.getPaymentMethod();
+            }
+            typeCodes[i] = (byte) typeCode;
+            paymentCodes[i] = (byte) paymentCode;
+        }
+        
+        ColumnarRecords columns = new ColumnarRecords(vehicles.size(), plateIds, plates.toArray(new String[0]),
+                typeCodes, Arrays.copyOf(typeTable, typeCount), paymentCodes, Arrays.copyOf(paymentTable, paymentCount));
+        for (int i = 0; i < columns.count; i++) {
+            Vehicle v = vehicles.get(i);
+            columns.entryTimes[i] = v.getEntryTimeMillis();
+            columns.exitTimes[i] = v.getExitTimeMillis();
+            columns.feeCents[i] = v.getFeeCents();
+            columns.paidAtTimes[i] = v.getPaidAtMillis();
+            columns.slotNumbers[i] = v.getSlotNumber();
+            columns.statusCodes[i] = (byte) v.getStatus().ordinal();
+        }
+        return columns;
+    }
+    
+    /**
+     * Find a value in the first entries of a code table
+     * @return Its code, or size if it is not there yet
+     */
+    private static int indexOf(Object[] table, int size, Object value) {
+        for (int i = 0; i < size; i++) {
+            if (table[i] == value || (value != null && value.equals(table[i]))) {
+                return i;
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Get the number of records
+     * @return Record count
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Pass every record to an action through one reused view
+     * @param action Action to run; must not keep the view (use toVehicle() to keep a record)
+     */
+    public void forEach(Consumer<? super VehicleRecord> action) {
+        View view = new View();
+        for (int i = 0; i < count; i++) {
+            view.index = i;
+            action.accept(view);
+        }
+    }
+    
+    /**
+     * Copy every record to a Vehicle
+     * @return Records in stored order
+     */
+    public ArrayList<Vehicle> toVehicles() {
+        ArrayList<Vehicle> vehicles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vehicles.add(toVehicle(i));
+        }
+        return vehicles;
+    }
+    
+    /**
+     * Copy the records that entered in a time range
+     * @param fromMillis Start of the range (inclusive)
+     * @param toMillis End of the range (exclusive)
+     * @param result List to add the matching records to, in stored order
+     */
+    public void collectEntriesBetween(long fromMillis, long toMillis, List<Vehicle> result) {
+        long[] entries = entryTimes;
+        for (int i = 0; i < count; i++) {
+            long entry = entries[i];
+            if (entry >= fromMillis && entry < toMillis) {
+                result.add(toVehicle(i));
+            }
+        }
+    }
+    
+    /**
+     * Copy the records whose plate matches a query
+     * @param query Query built with plateQuery()
+     * @param result List to add the matching records to, in stored order
+     */
+    public void collectPlateMatches(PlateQuery query, List<Vehicle> result) {
+        // Each distinct plate is tested once, however many records use it
+        BitSet matches = new BitSet(plates.length);
+        for (int id = 0; id < plates.length; id++) {
+            if (query.matches(plates[id])) {
+                matches.set(id);
+            }
+        }
+        if (matches.isEmpty()) {
+            return;
+        }
+        int[] ids = plateIds;
+        for (int i = 0; i < count; i++) {
+            if (matches.get(ids[i])) {
+                result.add(toVehicle(i));
+            }
+        }
+    }
+    
+    /**
+     * Create a plate query, to run against the plates of any number of instances
+     * @param normalizedQuery Normalized (trimmed, upper-case) partial vehicle number
+     * @param prefixOnly true to match only plates starting with the query
+     * @return Plate query for collectPlateMatches
+     */
+    public static PlateQuery plateQuery(String normalizedQuery, boolean prefixOnly) {
+        return new PlateQuery(normalizedQuery, prefixOnly);
+    }
+    
+    private Vehicle toVehicle(int i) {
+        Vehicle vehicle = new Vehicle(plates[plateIds[i]], types[typeCodes[i] & 0xFF], slotNumbers[i],
+                entryTimes[i], exitTimes[i], STATUSES[statusCodes[i]]);
+        vehicle.setFeeCents(feeCents[i]);
+        vehicle.setPaymentMethod(paymentMethods[paymentCodes[i] & 0xFF]);
+        vehicle.setPaidAtMillis(paidAtTimes[i]);
+        return vehicle;
+    }
+    
+    /**
+     * Flyweight over one row of the columns
+     */
+    private final class View implements VehicleRecord {
+        private int index;
+        
+        @Override
+        public String getVehicleNumber() {
+            return plates[plateIds[index]];
+        }
+        
+        @Override
+        public VehicleType getVehicleType() {
+            return types[typeCodes[index] & 0xFF];
+        }
+        
+        @Override
+        public int getSlotNumber() {
+            return slotNumbers[index];
+        }
+        
+        @Override
+        public long getEntryTimeMillis() {
+            return entryTimes[index];
+        }
+        
+        @Override
+        public long getExitTimeMillis() {
+            return exitTimes[index];
+        }
+        
+        @Override
+        public VehicleStatus getStatus() {
+            return STATUSES[statusCodes[index]];
+        }
+        
+        @Override
+        public long getFeeCents() {
+            return feeCents[index];
+        }
+        
+        @Override
+        public String getPaymentMethod() {
+            return paymentMethods[paymentCodes[index] & 0xFF];
+        }
+        
+        @Override
+        public long getPaidAtMillis() {
+            return paidAtTimes[index];
+        }
+        
+        @Override
+        public Vehicle toVehicle() {
+            return ColumnarRecords.this.toVehicle(index);
+        }
+    }
+    
+    /**
+     * Plate match, tested against each instance's distinct plates
+     */
+    public static final class PlateQuery {
+        private final String query;
+        private final boolean prefixOnly;
+        
+        private PlateQuery(String query, boolean prefixOnly) {
+            this.query = query;
+            this.prefixOnly = prefixOnly;
+        }
+        
+        boolean matches(String plate) {
+            String normalized = Validator.normalizeVehicleNumber(plate);
+            return prefixOnly ? normalized.startsWith(query) : normalized.contains(query);
+        }
+    }
+}
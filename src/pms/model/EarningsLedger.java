@@ -0,0 +1,211 @@
+package pms.model;
+
+import pms.util.DateTimeUtil;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running earnings totals for checked-out vehicles
+ * Kept up to date by ParkingDataStore as records are checked out, edited or deleted,
+ * so reading a total never rescans the vehicle history
+ * Sums the fee stored on each record at checkout, in cents to avoid rounding drift
+ * Archived history contributes through the summaries stored with its partitions
+ * @author uSer
+ */
+public class EarningsLedger {
+    private final LongAdder totalCents;
+    private final ConcurrentHashMap<Long, LongAdder> dailyCents; // Keyed by local midnight of the exit time
+    private final ConcurrentHashMap<Long, LongAdder> hourlyCents; // Keyed by start of the local hour of the exit time
+    private final ConcurrentHashMap<VehicleType, LongAdder> typeCents; // Keyed by vehicle type
+    private volatile Day today; // Cached bucket for the current day, replaced at midnight
+    
+    // Constructor
+    public EarningsLedger() {
+        this.totalCents = new LongAdder();
+        this.dailyCents = new ConcurrentHashMap<>();
+        this.hourlyCents = new ConcurrentHashMap<>();
+        this.typeCents = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Add a record's fee to the totals (ignored unless it is checked out)
+     * @param v Vehicle record
+     */
+    void add(Vehicle v) {
+        apply(v, 1);
+    }
+    
+    /**
+     * Take a record's fee back out of the totals (ignored unless it is checked out)
+     * Must be called with the record unchanged since it was added
+     * @param v Vehicle record
+     */
+    void remove(Vehicle v) {
+        apply(v, -1);
+    }
+    
+    private void apply(Vehicle v, int sign) {
+        if (v.getStatus() != VehicleStatus.OUT || !v.hasExitTime()) {
+            return;
+        }
+        
+        long exitTime = v.getExitTimeMillis();
+        long cents = sign * v.getFeeCents();
+        totalCents.add(cents);
+        bucket(dailyCents, DateTimeUtil.startOfDay(exitTime)).add(cents);
+        bucket(hourlyCents, DateTimeUtil.startOfHour(exitTime)).add(cents);
+        if (v.getVehicleType() != null) {
+            bucket(typeCents, v.getVehicleType()).add(cents);
+        }
+    }
+    
+    /**
+     * Write the totals as summary lines: T|cents, D|day|cents, H|hour|cents and V|type|cents
+     * Stored next to a history partition so its earnings load without its records
+     * @return Summary lines
+     */
+    ArrayList<String> toSummaryLines() {
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add("T|" + totalCents.sum());
+        for (Map.Entry<Long, LongAdder> entry : dailyCents.entrySet()) {
+            lines.add("D|" + entry.getKey() + "|" + entry.getValue().sum());
+        }
+        for (Map.Entry<Long, LongAdder> entry : hourlyCents.entrySet()) {
+            lines.add("H|" + entry.getKey() + "|" + entry.getValue().sum());
+        }
+        for (Map.Entry<VehicleType, LongAdder> entry : typeCents.entrySet()) {
+            lines.add("V|" + entry.getKey() + "|" + entry.getValue().sum());
+        }
+        return lines;
+    }
+    
+    /**
+     * Add one summary line written by toSummaryLines to the totals
+     * @param line Summary line
+     * @return true if it was an earnings line, false otherwise
+     */
+    boolean addSummaryLine(String line) {
+        String[] parts = line.split("\\|", -1);
+        try {
+            if (parts.length == 2 && "T".equals(parts[0])) {
+                totalCents.add(Long.parseLong(parts[1]));
+                return true;
+            }
+            if (parts.length != 3) {
+                return false;
+            }
+            long cents = Long.parseLong(parts[2]);
+            switch (parts[0]) {
+                case "D":
+                    bucket(dailyCents, Long.parseLong(parts[1])).add(cents);
+                    return true;
+                case "H":
+                    bucket(hourlyCents, Long.parseLong(parts[1])).add(cents);
+                    return true;
+                case "V":
+                    VehicleType type = VehicleType.of(parts[1]);
+                    if (type == null) {
+                        return false;
+                    }
+                    bucket(typeCents, type).add(cents);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+    
+    private static <K> LongAdder bucket(ConcurrentHashMap<K, LongAdder> buckets, K key) {
+        LongAdder adder = buckets.get(key);
+        if (adder == null) {
+            adder = buckets.computeIfAbsent(key, k -> new LongAdder());
+        }
+        return adder;
+    }
+    
+    /**
+     * Get total earnings over all history
+     * @return Total in cents
+     */
+    public long getTotalCents() {
+        return totalCents.sum();
+    }
+    
+    /**
+     * Get earnings for the current local day
+     * Rolls over to a new bucket at midnight
+     * @return Today's total in cents
+     */
+    public long getTodayCents() {
+        long now = System.currentTimeMillis();
+        Day day = today;
+        if (day == null || now < day.start || now >= day.end) {
+            long start = DateTimeUtil.startOfDay(now);
+            day = new Day(start, DateTimeUtil.startOfNextDay(now), bucket(dailyCents, start));
+            today = day;
+        }
+        return day.cents.sum();
+    }
+    
+    /**
+     * Get earnings for the local day containing a time
+     * @param epochMillis Any time on the day
+     * @return Day total in cents
+     */
+    public long getDayCents(long epochMillis) {
+        LongAdder adder = dailyCents.get(DateTimeUtil.startOfDay(epochMillis));
+        return adder != null ? adder.sum() : 0L;
+    }
+    
+    /**
+     * Get earnings for the local hour containing a time
+     * @param epochMillis Any time in the hour
+     * @return Hour total in cents
+     */
+    public long getHourCents(long epochMillis) {
+        LongAdder adder = hourlyCents.get(DateTimeUtil.startOfHour(epochMillis));
+        return adder != null ? adder.sum() : 0L;
+    }
+    
+    /**
+     * Get earnings for a vehicle type
+     * @param vehicleType Vehicle type
+     * @return Type total in cents
+     */
+    public long getTypeCents(VehicleType vehicleType) {
+        LongAdder adder = vehicleType != null ? typeCents.get(vehicleType) : null;
+        return adder != null ? adder.sum() : 0L;
+    }
+    
+    /**
+     * Get earnings per vehicle type
+     * @return Totals in cents, sorted by vehicle type
+     */
+    public Map<String, Long> getCentsByType() {
+        TreeMap<String, Long> totals = new TreeMap<>();
+        for (Map.Entry<VehicleType, LongAdder> entry : typeCents.entrySet()) {
+            totals.merge(entry.getKey().getName(), entry.getValue().sum(), Long::sum);
+        }
+        return totals;
+    }
+    
+    /**
+     * Day bucket with its bounds, swapped as a unit at midnight
+     */
+    private static class Day {
+        private final long start;
+        private final long end;
+        private final LongAdder cents;
+        
+        Day(long start, long end, LongAdder cents) {
+            this.start = start;
+            this.end = end;
+            this.cents = cents;
+        }
+    }
+}
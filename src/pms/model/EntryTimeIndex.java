@@ -0,0 +1,99 @@
+package pms.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Vehicle records ordered by entry time, for recent-entry and time-range queries
+ * Both cost O(log n + k) for k results instead of sorting the whole history
+ * Maintained by ParkingDataStore under the vehicle lock of the record being changed
+ * @author uSer
+ */
+public class EntryTimeIndex {
+    private final ConcurrentSkipListMap<EntryKey, Vehicle> entries;
+    
+    // Constructor
+    public EntryTimeIndex() {
+        this.entries = new ConcurrentSkipListMap<>();
+    }
+    
+    /**
+     * Index a vehicle record under its entry time
+     * @param v Vehicle record (with its record id assigned)
+     */
+    void add(Vehicle v) {
+        entries.put(new EntryKey(v.getEntryTimeMillis(), v.getRecordId()), v);
+    }
+    
+    /**
+     * Remove a vehicle record from the index
+     * Must be called with the entry time it was indexed under
+     * @param v Vehicle record
+     */
+    void remove(Vehicle v) {
+        entries.remove(new EntryKey(v.getEntryTimeMillis(), v.getRecordId()));
+    }
+    
+    /**
+     * Get the most recent entries
+     * Records with the same entry time are returned newest record first
+     * @param n Maximum number of entries
+     * @return Up to n vehicles, latest entry time first
+     */
+    public ArrayList<Vehicle> getLatest(int n) {
+        ArrayList<Vehicle> result = new ArrayList<>(Math.max(0, Math.min(n, 64)));
+        Iterator<Vehicle> it = entries.descendingMap().values().iterator();
+        while (result.size() < n && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+    
+    /**
+     * Get the entries in a time range
+     * @param fromMillis Start of the range (inclusive)
+     * @param toMillis End of the range (exclusive)
+     * @return Vehicles that entered in the range, in entry time order
+     */
+    public ArrayList<Vehicle> getBetween(long fromMillis, long toMillis) {
+        if (toMillis <= fromMillis) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(entries.subMap(new EntryKey(fromMillis, Long.MIN_VALUE), true,
+                new EntryKey(toMillis, Long.MIN_VALUE), false).values());
+    }
+    
+    /**
+     * Index key: entry time, then record id to keep records with equal times apart
+     */
+    private static final class EntryKey implements Comparable<EntryKey> {
+        private final long entryTime;
+        private final long recordId;
+        
+        EntryKey(long entryTime, long recordId) {
+            this.entryTime = entryTime;
+            this.recordId = recordId;
+        }
+        
+        @Override
+        public int compareTo(EntryKey other) {
+            int byTime = Long.compare(entryTime, other.entryTime);
+            return byTime != 0 ? byTime : Long.compare(recordId, other.recordId);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey other = (EntryKey) o;
+            return entryTime == other.entryTime && recordId == other.recordId;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(entryTime * 31 + recordId);
+        }
+    }
+}
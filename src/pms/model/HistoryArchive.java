@@ -0,0 +1,660 @@
+package pms.model;
+
+import pms.util.DateTimeUtil;
+import pms.util.FileHandler;
+import pms.util.MappedRecordFile;
+import pms.util.Validator;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Archive of checked-out vehicle records, kept on disk in immutable partitions per exit day
+ * A manifest lists each partition with its record count and entry time range; only the
+ * manifest and the partition summaries (plates, earnings) are read, in the background after startup
+ * A partition's records are loaded when a query needs them and cached until memory runs short
+ * Archived plates are not kept on the heap: each partition's sorted plate list is read from its
+ * summary when a plate search or lookup first needs it and cached until memory runs short,
+ * so a search only reads the records of partitions holding a matching plate
+ * With -Dpms.history.store=mapped, partitions are written as fixed-size slots (MappedRecordFile)
+ * and scanned in place through flyweight views, keeping archived records off the heap;
+ * only the records a query returns are copied to Vehicle objects
+ * With -Dpms.history.store=columnar, partitions are written as usual but cached in columnar
+ * form (ColumnarRecords): primitive arrays per field and a per-partition plate dictionary, scanned
+ * through flyweight views, with entry time and plate scans run as loops over the arrays
+ * Every archiving run adds its partitions under a new manifest generation, which the data
+ * file names once it is written, so partitions of an interrupted run are ignored
+ * Archived records are read-only
+ * @author uSer
+ */
+public class HistoryArchive {
+    // -Dpms.history.compress=true writes new partitions gzip-compressed
+    private static final boolean COMPRESS = Boolean.getBoolean("pms.history.compress");
+    private static final boolean MAPPED = "mapped".equalsIgnoreCase(System.getProperty("pms.history.store"));
+    private static final boolean COLUMNAR = "columnar".equalsIgnoreCase(System.getProperty("pms.history.store"));
+    
+    private int generation; // Manifest generation the data file relies on
+    private long recordCount;
+    private final TreeMap<String, Partition> partitions; // By partition name, i.e. in day order
+    private volatile boolean loaded; // Set when load() has read every committed partition
+    
+    // Constructor
+    public HistoryArchive() {
+        this.partitions = new TreeMap<>();
+    }
+    
+    /**
+     * Set the manifest generation the data file relies on
+     * Called before load(), so a snapshot saved while history loads still names it
+     * @param committedGeneration Manifest generation the data file relies on
+     */
+    synchronized void open(int committedGeneration) {
+        generation = committedGeneration;
+    }
+    
+    /**
+     * Read the manifest and the summaries of the committed partitions
+     * Runs in the background after startup; each partition becomes visible to queries
+     * (and its earnings to the ledger) as soon as its summary is read
+     * @param ledger Earnings ledger to add the archived earnings to
+     */
+    void load(EarningsLedger ledger) {
+        try {
+            int committedGeneration = getGeneration();
+            if (committedGeneration == 0) {
+                return;
+            }
+            ArrayList<String> manifest = FileHandler.loadHistoryManifest();
+            if (manifest == null) {
+                System.err.println("History manifest cannot be read; archived records are not available");
+                return;
+            }
+            
+            for (String line : manifest) {
+                Partition partition = Partition.parse(line);
+                if (partition == null || partition.generation > committedGeneration) {
+                    continue; // Malformed line, or written by an interrupted compaction
+                }
+                ArrayList<String> summary = FileHandler.loadHistorySummary(partition.fileName);
+                if (summary == null) {
+                    System.err.println("History partition " + partition.fileName + " has no summary; its earnings are not counted");
+                } else {
+                    for (String summaryLine : summary) {
+                        if (!summaryLine.startsWith("P|")) { // Plates are read again when searched
+                            ledger.addSummaryLine(summaryLine);
+                        }
+                    }
+                }
+                synchronized (this) {
+                    partitions.put(partition.name, partition);
+                    recordCount += partition.count;
+                }
+            }
+        } finally {
+            loaded = true;
+        }
+    }
+    
+    /**
+     * Check if load() has finished
+     * @return true once every committed partition is known
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+    
+    /**
+     * Write records to new partitions, one per exit day, under the next manifest generation
+     * The data file must then be saved with getGeneration() to commit them
+     * @param records Checked-out records to archive
+     * @return true if the partitions and manifest were written, false otherwise
+     *         (nothing is archived, also while the archive is still loading)
+     */
+    synchronized boolean append(List<Vehicle> records) {
+        if (!loaded) {
+            return false; // The new manifest would drop the partitions not read yet
+        }
+        TreeMap<Long, ArrayList<Vehicle>> byDay = new TreeMap<>();
+        for (Vehicle v : records) {
+            byDay.computeIfAbsent(DateTimeUtil.startOfDay(v.getExitTimeMillis()), k -> new ArrayList<>()).add(v);
+        }
+        
+        int nextGeneration = generation + 1;
+        ArrayList<Partition> added = new ArrayList<>();
+        for (Map.Entry<Long, ArrayList<Vehicle>> day : byDay.entrySet()) {
+            ArrayList<Vehicle> dayRecords = day.getValue();
+            Partition partition = new Partition(nextGeneration,
+                    nextPartitionName(day.getKey()) + partitionExtension(dayRecords), day.getKey(), dayRecords);
+            
+            EarningsLedger dayEarnings = new EarningsLedger();
+            Set<String> dayPlates = new TreeSet<>();
+            for (Vehicle v : dayRecords) {
+                dayEarnings.add(v);
+                dayPlates.add(Validator.normalizeVehicleNumber(v.getVehicleNumber()));
+            }
+            ArrayList<String> summary = new ArrayList<>();
+            for (String plate : dayPlates) {
+                summary.add("P|" + plate);
+            }
+            summary.addAll(dayEarnings.toSummaryLines());
+            
+            if (!FileHandler.saveHistoryPartition(partition.fileName, dayRecords, summary)) {
+                return false;
+            }
+            partition.cachePlates(dayPlates);
+            added.add(partition);
+        }
+        
+        ArrayList<String> manifest = new ArrayList<>();
+        for (Partition partition : partitions.values()) {
+            manifest.add(partition.toManifestLine());
+        }
+        for (Partition partition : added) {
+            manifest.add(partition.toManifestLine());
+        }
+        if (!FileHandler.saveHistoryManifest(manifest)) {
+            return false;
+        }
+        
+        generation = nextGeneration;
+        for (Partition partition : added) {
+            partitions.put(partition.name, partition);
+            recordCount += partition.count;
+        }
+        return true;
+    }
+    
+    /**
+     * Pick an unused partition name for a day: yyyy-MM-dd_NN, NN counting up from 00
+     * A day that is archived again (e.g. after a backdated checkout) gets another partition
+     */
+    private String nextPartitionName(long day) {
+        String date = DateTimeUtil.format(day).substring(0, 10);
+        int part = 0;
+        while (partitions.containsKey(String.format("%s_%02d", date, part))) {
+            part++;
+        }
+        return String.format("%s_%02d", date, part);
+    }
+    
+    /**
+     * Pick the file format of a new partition
+     * Mapped partitions fall back to the record file format if a record does not fit a slot
+     */
+    private static String partitionExtension(List<Vehicle> records) {
+        if (MAPPED) {
+            boolean fit = true;
+            for (Vehicle v : records) {
+                fit &= MappedRecordFile.fits(v);
+            }
+            if (fit) {
+                return ".dat";
+            }
+        }
+        return FileHandler.getRecordFileExtension() + (COMPRESS ? ".gz" : "");
+    }
+    
+    /**
+     * Pass every archived record to an action, in exit day order
+     * Records of mapped partitions are flyweight views, valid only during the call
+     * @param action Action to run; copy a record with toVehicle() to keep it
+     */
+    void forEach(Consumer<? super VehicleRecord> action) {
+        for (Partition partition : snapshotPartitions()) {
+            partition.forEach(action);
+        }
+    }
+    
+    /**
+     * Get all archived records, loading the partitions that are not cached
+     * @return Archived records in exit day order
+     */
+    ArrayList<Vehicle> getRecords() {
+        ArrayList<Vehicle> result = new ArrayList<>();
+        for (Partition partition : snapshotPartitions()) {
+            result.addAll(partition.getRecords());
+        }
+        return result;
+    }
+    
+    /**
+     * Check if an archived record uses a vehicle number (reads the partitions' plate lists, not their records)
+     * @param normalizedNumber Normalized vehicle number
+     * @return true if the number appears in the archive
+     */
+    boolean containsPlate(String normalizedNumber) {
+        for (Partition partition : snapshotPartitions()) {
+            String[] plates = partition.getPlates();
+            if (plates == null) {
+                if (!search(partition, normalizedNumber, true).isEmpty()) {
+                    return true; // No summary; fall back to the records
+                }
+            } else if (Arrays.binarySearch(plates, normalizedNumber) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Find archived records whose number contains (or starts with) a query
+     * Only the partitions whose plate list holds a matching plate are loaded
+     * @param query Partial vehicle number (case-insensitive)
+     * @param prefixOnly true to match only numbers starting with the query
+     * @return Matching records in exit day order
+     */
+    ArrayList<Vehicle> search(String query, boolean prefixOnly) {
+        ArrayList<Vehicle> result = new ArrayList<>();
+        String q = Validator.normalizeVehicleNumber(query);
+        if (q.isEmpty()) {
+            return result;
+        }
+        for (Partition partition : snapshotPartitions()) {
+            String[] plates = partition.getPlates();
+            if (plates == null || anyPlateMatches(plates, q, prefixOnly)) {
+                result.addAll(search(partition, q, prefixOnly));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Check a partition's sorted plate list for a match (binary search for a prefix)
+     */
+    private static boolean anyPlateMatches(String[] plates, String q, boolean prefixOnly) {
+        if (prefixOnly) {
+            int i = Arrays.binarySearch(plates, q);
+            int insertion = i >= 0 ? i : -i - 1;
+            return insertion < plates.length && plates[insertion].startsWith(q);
+        }
+        for (String plate : plates) {
+            if (plate.contains(q)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Scan one partition's records for a normalized query
+     */
+    private static ArrayList<Vehicle> search(Partition partition, String q, boolean prefixOnly) {
+        ArrayList<Vehicle> result = new ArrayList<>();
+        ColumnarRecords columns = partition.getColumns();
+        if (columns != null) {
+            columns.collectPlateMatches(ColumnarRecords.plateQuery(q, prefixOnly), result);
+            return result;
+        }
+        partition.forEach(record -> {
+            boolean match;
+            if (record instanceof MappedRecordFile.View) {
+                match = ((MappedRecordFile.View) record).plateMatches(q, prefixOnly);
+            } else {
+                String plate = Validator.normalizeVehicleNumber(record.getVehicleNumber());
+                match = prefixOnly ? plate.startsWith(q) : plate.contains(q);
+            }
+            if (match) {
+                result.add(record.toVehicle());
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Get archived records that entered in a time range
+     * Only partitions whose entry time range overlaps it are loaded
+     * @param fromMillis Start of the range (inclusive)
+     * @param toMillis End of the range (exclusive)
+     * @return Matching records in exit day order
+     */
+    ArrayList<Vehicle> getBetween(long fromMillis, long toMillis) {
+        ArrayList<Vehicle> result = new ArrayList<>();
+        for (Partition partition : snapshotPartitions()) {
+            if (toMillis <= partition.minEntryTime || fromMillis > partition.maxEntryTime) {
+                continue;
+            }
+            ColumnarRecords columns = partition.getColumns();
+            if (columns != null) {
+                columns.collectEntriesBetween(fromMillis, toMillis, result);
+                continue;
+            }
+            partition.forEach(record -> {
+                if (record.getEntryTimeMillis() >= fromMillis && record.getEntryTimeMillis() < toMillis) {
+                    result.add(record.toVehicle());
+                }
+            });
+        }
+        return result;
+    }
+    
+    /**
+     * Get the archived records with the latest entry times
+     * Partitions are read in order of their latest entry time, newest first, and reading stops
+     * once no remaining partition can hold a later entry than the n found so far
+     * @param n Maximum number of records
+     * @return Up to n records, latest entry time first
+     */
+    ArrayList<Vehicle> getLatestEntries(int n) {
+        ArrayList<Vehicle> result = new ArrayList<>();
+        if (n <= 0) {
+            return result;
+        }
+        ArrayList<Partition> newestFirst = snapshotPartitions();
+        newestFirst.sort(Comparator.comparingLong((Partition p) -> p.maxEntryTime).reversed());
+        
+        // The n latest entries so far, earliest at the head; only these are copied
+        PriorityQueue<Vehicle> latest = new PriorityQueue<>(n, Comparator.comparingLong(Vehicle::getEntryTimeMillis));
+        for (Partition partition : newestFirst) {
+            if (latest.size() == n && partition.maxEntryTime <= latest.peek().getEntryTimeMillis()) {
+                break;
+            }
+            partition.forEach(record -> {
+                if (latest.size() < n) {
+                    latest.add(record.toVehicle());
+                } else if (record.getEntryTimeMillis() > latest.peek().getEntryTimeMillis()) {
+                    latest.poll();
+                    latest.add(record.toVehicle());
+                }
+            });
+        }
+        result.addAll(latest);
+        result.sort(Comparator.comparingLong(Vehicle::getEntryTimeMillis).reversed());
+        return result;
+    }
+    
+    /**
+     * Take a snapshot of the archived partitions that can be read a range of records at a time
+     * Partitions are never changed once written, so the snapshot stays valid as more records are archived
+     * @return Snapshot of the current partitions
+     */
+    Snapshot snapshot() {
+        return new Snapshot(snapshotPartitions());
+    }
+    
+    private synchronized ArrayList<Partition> snapshotPartitions() {
+        return new ArrayList<>(partitions.values());
+    }
+    
+    synchronized int getGeneration() {
+        return generation;
+    }
+    
+    synchronized long getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * One immutable partition file and its manifest line
+     * Manifest format: generation|fileName|day|count|minEntryTime|maxEntryTime
+     */
+    private static final class Partition {
+        private final int generation;
+        private final String name;
+        private final String fileName;
+        private final long day;
+        private final int count;
+        private final long minEntryTime;
+        private final long maxEntryTime;
+        private SoftReference<String[]> plates; // Sorted distinct plates, read from the summary
+        private SoftReference<ArrayList<Vehicle>> records;
+        private SoftReference<ColumnarRecords> columns; // Used instead of records with -Dpms.history.store=columnar
+        private boolean rowsOnly; // Too many distinct codes for columnar form
+        private MappedRecordFile mapped; // Mapped on first scan of a .dat partition
+        
+        Partition(int generation, String fileName, long day, int count, long minEntryTime, long maxEntryTime) {
+            this.generation = generation;
+            this.fileName = fileName;
+            this.name = fileName.substring(0, fileName.indexOf('.'));
+            this.day = day;
+            this.count = count;
+            this.minEntryTime = minEntryTime;
+            this.maxEntryTime = maxEntryTime;
+            this.plates = new SoftReference<>(null);
+            this.records = new SoftReference<>(null);
+            this.columns = new SoftReference<>(null);
+        }
+        
+        /**
+         * Create a partition for records about to be written, keeping them cached
+         * (in columnar form if configured) unless the partition is mapped
+         */
+        Partition(int generation, String fileName, long day, ArrayList<Vehicle> dayRecords) {
+            this(generation, fileName, day, dayRecords.size(), minEntry(dayRecords), maxEntry(dayRecords));
+            if (!isMapped()) {
+                cache(new ArrayList<>(dayRecords));
+            }
+        }
+        
+        /**
+         * Cache records read from or written to the partition file (called holding this, or while constructing)
+         */
+        private void cache(ArrayList<Vehicle> loaded) {
+            if (COLUMNAR && !rowsOnly) {
+                ColumnarRecords columnar = ColumnarRecords.of(loaded);
+                if (columnar != null) {
+                    columns = new SoftReference<>(columnar);
+                    return;
+                }
+                rowsOnly = true;
+            }
+            records = new SoftReference<>(loaded);
+        }
+        
+        /**
+         * Cache the plates written to a new partition's summary
+         * @param sortedPlates Distinct normalized plates in sorted order
+         */
+        synchronized void cachePlates(Set<String> sortedPlates) {
+            plates = new SoftReference<>(sortedPlates.toArray(new String[0]));
+        }
+        
+        /**
+         * Get the partition's distinct plates, reading its summary if they are not cached
+         * @return Sorted normalized plates, or null if the partition has no summary
+         */
+        synchronized String[] getPlates() {
+            String[] cached = plates.get();
+            if (cached == null) {
+                ArrayList<String> summary = FileHandler.loadHistorySummary(fileName);
+                if (summary == null) {
+                    return null;
+                }
+                ArrayList<String> read = new ArrayList<>();
+                for (String summaryLine : summary) {
+                    if (summaryLine.startsWith("P|")) {
+                        read.add(summaryLine.substring(2));
+                    }
+                }
+                cached = read.toArray(new String[0]);
+                Arrays.sort(cached);
+                plates = new SoftReference<>(cached);
+            }
+            return cached;
+        }
+        
+        boolean isMapped() {
+            return fileName.endsWith(".dat");
+        }
+        
+        static Partition parse(String line) {
+            String[] parts = line.split("\\|", -1);
+            if (parts.length != 6 || parts[1].indexOf('.') < 1) {
+                return null;
+            }
+            try {
+                return new Partition(Integer.parseInt(parts[0]), parts[1], Long.parseLong(parts[2]),
+                        Integer.parseInt(parts[3]), Long.parseLong(parts[4]), Long.parseLong(parts[5]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        
+        String toManifestLine() {
+            return generation + "|" + fileName + "|" + day + "|" + count + "|" + minEntryTime + "|" + maxEntryTime;
+        }
+        
+        /**
+         * Get the partition's records, reading the file if they are not cached
+         * @return Records (shared; callers must not modify them)
+         */
+        synchronized List<Vehicle> getRecords() {
+            ColumnarRecords columnar = getColumns();
+            if (columnar != null) {
+                return columnar.toVehicles();
+            }
+            ArrayList<Vehicle> cached = records.get();
+            if (cached == null) {
+                cached = FileHandler.loadHistoryPartition(fileName);
+                records = new SoftReference<>(cached);
+            }
+            return cached;
+        }
+        
+        /**
+         * Get the partition's records in columnar form, reading the file if they are not cached
+         * @return Columnar records, or null unless -Dpms.history.store=columnar (or they do not fit)
+         */
+        synchronized ColumnarRecords getColumns() {
+            if (!COLUMNAR || rowsOnly || isMapped()) {
+                return null;
+            }
+            ColumnarRecords cached = columns.get();
+            if (cached == null) {
+                cache(FileHandler.loadHistoryPartition(fileName));
+                cached = columns.get();
+            }
+            return cached;
+        }
+        
+        /**
+         * Pass every record to an action: flyweight views for a mapped or columnar
+         * partition, the cached records otherwise
+         */
+        void forEach(Consumer<? super VehicleRecord> action) {
+            if (!isMapped()) {
+                ColumnarRecords columnar = getColumns();
+                if (columnar != null) {
+                    columnar.forEach(action);
+                } else {
+                    getRecords().forEach(action);
+                }
+                return;
+            }
+            MappedRecordFile file;
+            synchronized (this) {
+                if (mapped == null) {
+                    mapped = FileHandler.mapHistoryPartition(fileName);
+                }
+                file = mapped;
+            }
+            if (file != null) {
+                file.forEach(action);
+            }
+        }
+        
+        /**
+         * Copy the records in a range of positions in the partition
+         * @param from First position (inclusive)
+         * @param to Last position (exclusive)
+         * @param result List to add the copies to
+         */
+        void copyRange(int from, int to, List<Vehicle> result) {
+            int[] position = {0};
+            forEach(record -> {
+                if (position[0] >= from && position[0] < to) {
+                    result.add(record.toVehicle());
+                }
+                position[0]++;
+            });
+        }
+        
+        private static long minEntry(List<Vehicle> vehicles) {
+            long min = Long.MAX_VALUE;
+            for (Vehicle v : vehicles) {
+                min = Math.min(min, v.getEntryTimeMillis());
+            }
+            return min;
+        }
+        
+        private static long maxEntry(List<Vehicle> vehicles) {
+            long max = Long.MIN_VALUE;
+            for (Vehicle v : vehicles) {
+                max = Math.max(max, v.getEntryTimeMillis());
+            }
+            return max;
+        }
+    }
+    
+    /**
+     * Archived records as of one moment, numbered in exit day order
+     * Only the partitions a range falls in are read
+     */
+    static final class Snapshot {
+        private final ArrayList<Partition> partitions;
+        private final long[] firstRows; // Number of each partition's first record
+        private final long size;
+        
+        // Constructor
+        private Snapshot(ArrayList<Partition> partitions) {
+            this.partitions = partitions;
+            this.firstRows = new long[partitions.size()];
+            long rows = 0;
+            for (int i = 0; i < partitions.size(); i++) {
+                firstRows[i] = rows;
+                rows += partitions.get(i).count;
+            }
+            this.size = rows;
+        }
+        
+        long size() {
+            return size;
+        }
+        
+        /**
+         * Copy a range of records
+         * A partition that cannot be read leaves null entries, so later records keep their numbers
+         * @param first Number of the first record
+         * @param count Maximum number of records
+         * @param result List to add the copies to
+         */
+        void copyRange(long first, int count, List<Vehicle> result) {
+            long end = Math.min(size, first + count);
+            int i = Arrays.binarySearch(firstRows, first);
+            if (i < 0) {
+                i = -i - 2; // Partition the record falls in
+            }
+            for (; i < partitions.size() && first < end; i++) {
+                Partition partition = partitions.get(i);
+                if (partition.count == 0) {
+                    continue;
+                }
+                int from = (int) (first - firstRows[i]);
+                int to = (int) Math.min(partition.count, end - firstRows[i]);
+                int expected = result.size() + to - from;
+                partition.copyRange(from, to, result);
+                while (result.size() < expected) {
+                    result.add(null);
+                }
+                first = firstRows[i] + to;
+            }
+        }
+        
+        /**
+         * Pass every record in the snapshot to an action, in exit day order
+         * @param action Action to run; records may be flyweight views valid only during the call
+         */
+        void forEach(Consumer<? super VehicleRecord> action) {
+            for (Partition partition : partitions) {
+                partition.forEach(action);
+            }
+        }
+    }
+}
@@ -1,60 +1,574 @@
 package pms.model;
 
+import pms.util.DateTimeUtil;
+import pms.util.FeeCalculator;
 import pms.util.FileHandler;
+import pms.util.JournalWriter;
+import pms.util.Validator;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Data store for managing vehicles and parking slots
  * Provides CRUD operations for the parking management system
+ * Vehicles are indexed by normalized vehicle number for constant-time lookups
+ * Slots are addressed directly by number and their occupancy is tracked in a bitmap
+ * Safe for use from several gate terminals at once: slots are reserved with
+ * compare-and-set, mutations of one vehicle number are serialized by a striped
+ * lock, and readers never take a lock
+ * Writers share a snapshot lock that compaction takes exclusively, so a snapshot
+ * never contains a change whose journal entry is written after it
+ * Journal entries are written behind by a JournalWriter; with -Dpms.durability=event a
+ * mutation returns only once its entry is on disk. Compaction runs on a background thread
+ * Earnings totals, the plate search index and the entry time index follow every record change
+ * Records checked out before today are moved to the history archive at each snapshot,
+ * so the in-memory record list only holds the active set and recent history
+ * Startup has two phases: the constructor restores the snapshot and journal (active vehicles,
+ * slot occupancy and recent history), so gates can run at once; the archive's partition
+ * summaries are read on the compaction thread afterwards. Until isHistoryLoaded(), queries
+ * that include archived records and the total earnings may be incomplete
  * @author uSer
  */
 public class ParkingDataStore {
-    private ArrayList<Vehicle> vehicles;
-    private ArrayList<ParkingSlot> parkingSlots;
-    private static final int TOTAL_SLOTS = 50; // Default total slots
+    private ConcurrentSkipListMap<Long, Vehicle> vehicles; // Unarchived records, keyed by record id (insertion order)
+    private ParkingSlot[] parkingSlots; // Indexed by slot number - 1
+    private AtomicLongArray occupiedSlots; // Bit (slot number - 1) is set while the slot is occupied
+    private AtomicInteger occupiedCount;
+    private AtomicInteger nextFreeHint; // No free slot exists below this bit index
+    private ConcurrentHashMap<String, Vehicle> vehicleIndex; // Latest record per normalized vehicle number
+    private ConcurrentHashMap<String, Vehicle> activeIndex; // Vehicles with status IN
+    private ReentrantLock[] vehicleLocks; // Striped by normalized vehicle number
+    private AtomicLong nextRecordId;
+    private EarningsLedger earningsLedger;
+    private PlateSearchIndex plateSearchIndex;
+    private EntryTimeIndex entryTimeIndex;
+    private HistoryArchive historyArchive;
+    private final int totalSlots;
+    private static final int DEFAULT_TOTAL_SLOTS = Integer.getInteger("pms.totalSlots", 50); // Default total slots
+    private static final int LOCK_STRIPES = 64; // Power of two
+    private static final int JOURNAL_COMPACT_THRESHOLD = 1000; // Journal entries per snapshot
+    private static final long NO_JOURNAL_ENTRY = -1L; // Journal sequence of a mutation that appended nothing
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final Object journalLock = new Object(); // Serializes journal appends
+    private int journalEntries; // Entries appended since the last snapshot (guarded by journalLock)
+    private volatile boolean compactionDue;
+    private final JournalWriter journalWriter;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final CountDownLatch historyLoaded = new CountDownLatch(1);
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "pms-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     // Constructor
     public ParkingDataStore() {
-        this.vehicles = new ArrayList<>();
-        this.parkingSlots = new ArrayList<>();
+        this(DEFAULT_TOTAL_SLOTS);
+    }
+    
+    /**
+     * Create a data store with a given number of slots (used by tools and benchmarks)
+     * @param totalSlots Number of parking slots
+     */
+    public ParkingDataStore(int totalSlots) {
+        this.totalSlots = totalSlots;
+        this.vehicles = new ConcurrentSkipListMap<>();
+        this.parkingSlots = new ParkingSlot[totalSlots];
+        this.occupiedSlots = new AtomicLongArray((totalSlots + 63) / 64);
+        this.occupiedCount = new AtomicInteger();
+        this.nextFreeHint = new AtomicInteger();
+        this.vehicleIndex = new ConcurrentHashMap<>();
+        this.activeIndex = new ConcurrentHashMap<>();
+        this.vehicleLocks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            vehicleLocks[i] = new ReentrantLock();
+        }
+        this.nextRecordId = new AtomicLong();
+        this.earningsLedger = new EarningsLedger();
+        this.plateSearchIndex = new PlateSearchIndex();
+        this.entryTimeIndex = new EntryTimeIndex();
+        this.historyArchive = new HistoryArchive();
+        this.journalWriter = FileHandler.openJournalWriter();
         initializeSlots();
         loadVehiclesFromFile();
     }
     
     /**
-     * Load vehicles from file and update slot occupancy
+     * Load vehicles from file, replay the journal and update slot occupancy,
+     * then start loading the history archive in the background
      */
     private void loadVehiclesFromFile() {
-        ArrayList<Vehicle> loadedVehicles = FileHandler.loadVehiclesFromFile();
-        for (Vehicle v : loadedVehicles) {
-            vehicles.add(v);
-            // Update slot occupancy based on loaded vehicles
-            ParkingSlot slot = getSlotByNumber(v.getSlotNumber());
-            if (slot != null && "IN".equals(v.getStatus())) {
-                slot.setOccupied(true);
+        // The latest intact snapshot, or the previous one if it is damaged
+        FileHandler.Snapshot snapshot = FileHandler.recoverSnapshot();
+        historyArchive.open(snapshot.getArchiveGeneration());
+        
+        for (Vehicle v : snapshot.getVehicles()) {
+            insertVehicle(v);
+        }
+        
+        // Replay mutations written after the snapshot
+        ArrayList<FileHandler.JournalEntry> journal = snapshot.getJournal();
+        for (FileHandler.JournalEntry entry : journal) {
+            applyJournalEntry(entry);
+        }
+        
+        // Update slot occupancy based on loaded vehicles
+        for (Vehicle v : activeIndex.values()) {
+            occupySlot(v.getSlotNumber());
+        }
+        
+        // Fold a replayed journal into a fresh snapshot so it is not replayed again,
+        // and replace a damaged snapshot (archiving waits until the history is loaded)
+        if (!journal.isEmpty() || snapshot.isRecovered()) {
+            saveVehiclesToFile();
+        }
+        
+        compactionExecutor.execute(this::loadHistory);
+    }
+    
+    /**
+     * Second startup phase: read the history archive, then move history left over from
+     * earlier days to it. Runs on the compaction thread, so no compaction starts before
+     */
+    private void loadHistory() {
+        // Archived earnings come from the partition summaries; the records stay on disk
+        try {
+            historyArchive.load(earningsLedger);
+            if (!collectArchivable().isEmpty()) {
+                saveVehiclesToFile();
             }
+        } finally {
+            historyLoaded.countDown();
         }
     }
     
     /**
-     * Save all vehicles to file
+     * Check if the history archive is loaded
+     * Until then, archived records are missing from searches and reports, and from the total earnings
+     * @return true once the archive is loaded
+     */
+    public boolean isHistoryLoaded() {
+        return historyLoaded.getCount() == 0;
+    }
+    
+    /**
+     * Wait until the history archive is loaded (for tools that need complete results)
+     * @param timeoutMillis Longest time to wait
+     * @return true if the archive is loaded, false if the wait timed out or was interrupted
+     */
+    public boolean awaitHistory(long timeoutMillis) {
+        try {
+            return historyLoaded.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Apply a replayed journal entry to the vehicle list
+     * Slot occupancy is rebuilt once after replay, so it is not touched here
+     * @param entry Journal entry to apply
+     */
+    private void applyJournalEntry(FileHandler.JournalEntry entry) {
+        Vehicle existing = getVehicleByNumber(entry.getVehicleNumber());
+        switch (entry.getOperation()) {
+            case FileHandler.JOURNAL_ADD:
+                insertVehicle(entry.getVehicle());
+                break;
+            case FileHandler.JOURNAL_UPDATE:
+                if (existing != null) {
+                    unindexVehicle(existing);
+                    untrackRecord(existing);
+                    existing.updateFrom(entry.getVehicle());
+                    trackRecord(existing);
+                    indexVehicle(existing);
+                }
+                break;
+            case FileHandler.JOURNAL_DELETE:
+                if (entry.getEntryTimeMillis() != DateTimeUtil.NO_TIME) {
+                    existing = findRecord(entry.getVehicleNumber(), entry.getEntryTimeMillis());
+                }
+                if (existing != null) {
+                    removeVehicle(existing);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Find the unarchived record of a vehicle number with a given entry time
+     * Times are compared to the second, the precision of data files and the journal
+     * @param vehicleNumber Vehicle number
+     * @param entryTimeMillis Entry time of the record
+     * @return Newest matching record, or null if there is none
+     */
+    private Vehicle findRecord(String vehicleNumber, long entryTimeMillis) {
+        String key = Validator.normalizeVehicleNumber(vehicleNumber);
+        long entrySecond = entryTimeMillis / 1000;
+        for (Vehicle v : vehicles.descendingMap().values()) {
+            if (v.getEntryTimeMillis() / 1000 == entrySecond && key.equals(Validator.normalizeVehicleNumber(v.getVehicleNumber()))) {
+                return v;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Append a vehicle record to the list and indexes
+     * @param v Vehicle to insert
+     */
+    private void insertVehicle(Vehicle v) {
+        v.setRecordId(nextRecordId.incrementAndGet());
+        vehicles.put(v.getRecordId(), v);
+        indexVehicle(v);
+        trackRecord(v);
+    }
+    
+    /**
+     * Add a vehicle to the lookup indexes
+     * The newest record wins when a vehicle number appears more than once in history
+     * @param v Vehicle to index
+     */
+    private void indexVehicle(Vehicle v) {
+        String key = Validator.normalizeVehicleNumber(v.getVehicleNumber());
+        vehicleIndex.put(key, v);
+        if (v.getStatus() == VehicleStatus.IN) {
+            activeIndex.put(key, v);
+        }
+    }
+    
+    /**
+     * Remove a vehicle from the lookup indexes
+     * Only this record is removed: Vehicle.equals() matches any record with the same number
+     * @param v Vehicle to remove
+     */
+    private void unindexVehicle(Vehicle v) {
+        String key = Validator.normalizeVehicleNumber(v.getVehicleNumber());
+        vehicleIndex.computeIfPresent(key, (k, indexed) -> indexed == v ? null : indexed);
+        activeIndex.computeIfPresent(key, (k, indexed) -> indexed == v ? null : indexed);
+    }
+    
+    /**
+     * Add a record to the earnings totals, plate search index and entry time index
+     * Paired with untrackRecord around every change to a record
+     * @param v Vehicle record
+     */
+    private void trackRecord(Vehicle v) {
+        earningsLedger.add(v);
+        plateSearchIndex.add(v);
+        entryTimeIndex.add(v);
+    }
+    
+    /**
+     * Remove a record from the earnings totals, plate search index and entry time index
+     * @param v Vehicle record, unchanged since trackRecord
+     */
+    private void untrackRecord(Vehicle v) {
+        earningsLedger.remove(v);
+        plateSearchIndex.remove(v);
+        entryTimeIndex.remove(v);
+    }
+    
+    /**
+     * Remove a vehicle record from the list and indexes
+     * Falls back to an older record with the same number, if history has one
+     * @param v Vehicle record to remove
+     */
+    private void removeVehicle(Vehicle v) {
+        unindexVehicle(v);
+        vehicles.remove(v.getRecordId());
+        untrackRecord(v);
+        
+        String key = Validator.normalizeVehicleNumber(v.getVehicleNumber());
+        if (!vehicleIndex.containsKey(key)) {
+            for (Vehicle older : vehicles.descendingMap().values()) {
+                if (key.equals(Validator.normalizeVehicleNumber(older.getVehicleNumber()))) {
+                    vehicleIndex.putIfAbsent(key, older);
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the lock stripe guarding all records with a vehicle number
+     * @param vehicleNumber Vehicle number
+     * @return Index into vehicleLocks
+     */
+    private int stripeFor(String vehicleNumber) {
+        int hash = Validator.normalizeVehicleNumber(vehicleNumber).hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+    
+    /**
+     * Save all vehicles to file as a new snapshot and start a new journal
      * @return true if saved successfully, false otherwise
      */
     public boolean saveVehiclesToFile() {
-        return FileHandler.saveVehiclesToFile(vehicles);
+        snapshotLock.writeLock().lock();
+        try {
+            // Entries still queued belong to changes the snapshot already contains
+            journalWriter.flush();
+            journalWriter.checkError();
+            archiveHistory();
+            boolean saved = FileHandler.saveVehiclesToFile(new ArrayList<>(vehicles.values()),
+                    historyArchive.getGeneration());
+            if (saved) {
+                synchronized (journalLock) {
+                    journalWriter.rotate();
+                    journalEntries = 0;
+                }
+                compactionDue = false;
+            }
+            return saved;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Write all queued journal entries to disk (used by the shutdown hook)
+     * @return true if the journal is on disk, false otherwise
+     */
+    public boolean flushJournal() {
+        return journalWriter.flush();
+    }
+    
+    /**
+     * Save a final snapshot and stop the journal and compaction threads
+     * The store must not be changed afterwards
+     * @return true if saved successfully, false otherwise
+     */
+    public boolean close() {
+        boolean saved = saveVehiclesToFile();
+        compactionExecutor.shutdown();
+        return journalWriter.close() && saved;
+    }
+    
+    /**
+     * Get the records that belong in the archive: checked out before today
+     * @return Archivable records in insertion order
+     */
+    private ArrayList<Vehicle> collectArchivable() {
+        long startOfToday = DateTimeUtil.startOfDay(DateTimeUtil.now());
+        ArrayList<Vehicle> archivable = new ArrayList<>();
+        for (Vehicle v : vehicles.values()) {
+            if (v.getStatus() == VehicleStatus.OUT && v.hasExitTime() && v.getExitTimeMillis() < startOfToday) {
+                archivable.add(v);
+            }
+        }
+        return archivable;
+    }
+    
+    /**
+     * Move archivable records to new history partitions and drop them from memory
+     * Their earnings stay in the ledger. Called with the snapshot write lock held,
+     * before the data file is written, so the archive and the data file never both hold a record
+     * once the new data file (which names the manifest generation) is in place
+     * Does nothing while the archive is still loading
+     */
+    private void archiveHistory() {
+        ArrayList<Vehicle> archivable = collectArchivable();
+        if (archivable.isEmpty() || !historyArchive.append(archivable)) {
+            return;
+        }
+        
+        HashSet<String> affected = new HashSet<>();
+        for (Vehicle v : archivable) {
+            unindexVehicle(v);
+            vehicles.remove(v.getRecordId());
+            plateSearchIndex.remove(v);
+            entryTimeIndex.remove(v);
+            affected.add(Validator.normalizeVehicleNumber(v.getVehicleNumber()));
+        }
+        
+        // Point the lookup index back at the newest unarchived record, if any
+        for (Vehicle v : vehicles.descendingMap().values()) {
+            String key = Validator.normalizeVehicleNumber(v.getVehicleNumber());
+            if (affected.contains(key)) {
+                vehicleIndex.putIfAbsent(key, v);
+            }
+        }
+    }
+    
+    /**
+     * Queue a journal entry and flag compaction once the journal grows large
+     * Called while holding the vehicle lock and the shared snapshot lock
+     * @return Sequence number of the entry, for endMutation, or NO_JOURNAL_ENTRY if the journal is unavailable
+     */
+    private long appendJournalEntry(char operation, String vehicleNumber, Vehicle v) {
+        synchronized (journalLock) {
+            long sequence = journalWriter.append(FileHandler.formatJournalEntry(operation, vehicleNumber, v));
+            if (sequence < 0) {
+                // Journal unavailable - fall back to a full snapshot
+                compactionDue = true;
+                return NO_JOURNAL_ENTRY;
+            }
+            journalEntries++;
+            if (journalEntries >= JOURNAL_COMPACT_THRESHOLD) {
+                compactionDue = true;
+            }
+            return sequence;
+        }
+    }
+    
+    /**
+     * Lock out compaction while a mutation and its journal entry are written
+     * @param vehicleLock Vehicle lock stripe(s) to take first
+     */
+    private void beginMutation(ReentrantLock... vehicleLock) {
+        for (ReentrantLock lock : vehicleLock) {
+            lock.lock();
+        }
+        snapshotLock.readLock().lock();
+    }
+    
+    /**
+     * Release the locks taken by beginMutation, wait for the mutation's own journal entry
+     * if the durability mode asks for it, and schedule compaction if the journal is due
+     * Waiting happens after the locks are released, so other terminals' entries
+     * join the same write and fsync (group commit)
+     * @param journalSequence Sequence of the entry appendJournalEntry returned, or
+     *        NO_JOURNAL_ENTRY if the mutation was rejected (nothing to wait for)
+     * @param vehicleLock Vehicle lock stripe(s) passed to beginMutation
+     */
+    private void endMutation(long journalSequence, ReentrantLock... vehicleLock) {
+        snapshotLock.readLock().unlock();
+        for (int i = vehicleLock.length - 1; i >= 0; i--) {
+            vehicleLock[i].unlock();
+        }
+        if (journalSequence != NO_JOURNAL_ENTRY) {
+            journalWriter.awaitDurable(journalSequence);
+        }
+        if (journalWriter.checkError()) {
+            compactionDue = true; // Journal unavailable - fall back to a full snapshot
+        }
+        if (compactionDue) {
+            scheduleCompaction();
+        }
+    }
+    
+    /**
+     * Run saveVehiclesToFile on the compaction thread unless it is already pending
+     */
+    private void scheduleCompaction() {
+        if (!compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactionExecutor.execute(() -> {
+                compactionScheduled.set(false);
+                if (compactionDue) {
+                    saveVehiclesToFile();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compactionScheduled.set(false); // Closed; close() saved a final snapshot
+        }
     }
     
     /**
      * Initialize parking slots
      */
     private void initializeSlots() {
-        for (int i = 1; i <= TOTAL_SLOTS; i++) {
-            parkingSlots.add(new ParkingSlot(i, false));
+        for (int i = 1; i <= totalSlots; i++) {
+            parkingSlots[i - 1] = new ParkingSlot(i, false);
         }
     }
     
     /**
-     * Add a new vehicle to the system
+     * Atomically mark a slot as occupied
+     * @param slotNumber Slot number to occupy
+     * @return true if the slot was free and is now occupied, false otherwise
+     */
+    private boolean occupySlot(int slotNumber) {
+        ParkingSlot slot = getSlotByNumber(slotNumber);
+        if (slot == null) {
+            return false;
+        }
+        
+        int word = (slotNumber - 1) >>> 6;
+        long mask = 1L << (slotNumber - 1);
+        long bits;
+        do {
+            bits = occupiedSlots.get(word);
+            if ((bits & mask) != 0) {
+                return false; // Another gate holds the slot
+            }
+        } while (!occupiedSlots.compareAndSet(word, bits, bits | mask));
+        
+        slot.setOccupied(true);
+        occupiedCount.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Atomically mark a slot as free
+     * @param slotNumber Slot number to release
+     */
+    private void releaseSlot(int slotNumber) {
+        ParkingSlot slot = getSlotByNumber(slotNumber);
+        if (slot == null) {
+            return;
+        }
+        
+        int word = (slotNumber - 1) >>> 6;
+        long mask = 1L << (slotNumber - 1);
+        long bits;
+        do {
+            bits = occupiedSlots.get(word);
+            if ((bits & mask) == 0) {
+                return; // Already free
+            }
+        } while (!occupiedSlots.compareAndSet(word, bits, bits & ~mask));
+        
+        slot.setOccupied(false);
+        occupiedCount.decrementAndGet();
+        nextFreeHint.accumulateAndGet(slotNumber - 1, Math::min);
+    }
+    
+    /**
+     * Find the first free slot at or after a bit index
+     * @param fromIndex Bit index to start from
+     * @return Bit index of the first free slot, or the slot count if none is free
+     */
+    private int nextClearBit(int fromIndex) {
+        int word = fromIndex >>> 6;
+        if (word >= occupiedSlots.length()) {
+            return parkingSlots.length;
+        }
+        long clear = ~occupiedSlots.get(word) & (-1L << fromIndex);
+        while (clear == 0) {
+            if (++word == occupiedSlots.length()) {
+                return parkingSlots.length;
+            }
+            clear = ~occupiedSlots.get(word);
+        }
+        return Math.min(word * 64 + Long.numberOfTrailingZeros(clear), parkingSlots.length);
+    }
+    
+    /**
+     * Add a new vehicle to the system and record it in the journal
      * Prevents duplicate IN status for same vehicle number
      * @param v Vehicle to add
      * @return true if added successfully, false otherwise
@@ -64,50 +578,131 @@ public class ParkingDataStore {
             return false;
         }
         
-        // Prevent duplicate IN status for same vehicle number
-        if ("IN".equals(v.getStatus())) {
-            Vehicle existing = getVehicleByNumber(v.getVehicleNumber());
-            if (existing != null && "IN".equals(existing.getStatus())) {
+        ReentrantLock lock = vehicleLocks[stripeFor(v.getVehicleNumber())];
+        long journalSequence = NO_JOURNAL_ENTRY;
+        beginMutation(lock);
+        try {
+            // Prevent duplicate IN status for same vehicle number
+            boolean parking = v.getStatus() == VehicleStatus.IN;
+            if (parking && activeIndex.containsKey(Validator.normalizeVehicleNumber(v.getVehicleNumber()))) {
                 return false; // Vehicle already has IN status
             }
-        }
-        
-        // Check if slot is available
-        ParkingSlot slot = getSlotByNumber(v.getSlotNumber());
-        if (slot != null && !slot.isOccupied()) {
-            vehicles.add(v);
-            if ("IN".equals(v.getStatus())) {
-                slot.setOccupied(true);
+            
+            // Reserve the slot; a gate that loses the race for it fails here
+            if (parking) {
+                if (!occupySlot(v.getSlotNumber())) {
+                    return false;
+                }
+            } else if (getSlotByNumber(v.getSlotNumber()) == null || isSlotOccupied(v.getSlotNumber())) {
+                return false;
             }
+            
+            insertVehicle(v);
+            journalSequence = appendJournalEntry(FileHandler.JOURNAL_ADD, v.getVehicleNumber(), v);
             return true;
+        } finally {
+            endMutation(journalSequence, lock);
         }
-        return false;
     }
     
     /**
-     * Get all vehicles
-     * @return List of all vehicles
+     * Get all vehicles, including archived history
+     * Loads the history partitions that are not cached
+     * Does not block writers; the copy reflects the list at some point during the call
+     * @return List of all vehicles, archived records first
      */
     public ArrayList<Vehicle> getAllVehicles() {
-        return new ArrayList<>(vehicles);
+        ArrayList<Vehicle> all = historyArchive.getRecords();
+        all.addAll(vehicles.values());
+        return all;
     }
     
     /**
-     * Get all vehicles with status "IN"
-     * @return List of vehicles currently in parking
+     * Get the checked-out records, archived ones first, without copying the archive
+     * Holds off archiving while the unarchived records are collected, so no record is counted twice
+     * @return Snapshot of the checked-out records
      */
-    public ArrayList<Vehicle> getActiveVehicles() {
-        ArrayList<Vehicle> activeVehicles = new ArrayList<>();
-        for (Vehicle v : vehicles) {
-            if ("IN".equals(v.getStatus())) {
-                activeVehicles.add(v);
+    public CheckedOutRecords getCheckedOutRecords() {
+        snapshotLock.readLock().lock();
+        try {
+            return new CheckedOutRecords(historyArchive.snapshot(), collectUnarchived(v -> true));
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the records checked out today
+     * Records checked out before today are archived, so only the unarchived set is read
+     * @return Snapshot of today's checked-out records
+     */
+    public CheckedOutRecords getTodayCheckedOutRecords() {
+        return new CheckedOutRecords(null, collectUnarchived(v -> DateTimeUtil.isToday(v.getExitTimeMillis())));
+    }
+    
+    /**
+     * Collect the unarchived checked-out records that match a filter
+     * @param filter Filter applied to checked-out records with an exit time
+     * @return Matching records in insertion order
+     */
+    private ArrayList<Vehicle> collectUnarchived(Predicate<Vehicle> filter) {
+        ArrayList<Vehicle> result = new ArrayList<>();
+        for (Vehicle v : vehicles.values()) {
+            if (v.getStatus() == VehicleStatus.OUT && v.hasExitTime() && filter.test(v)) {
+                result.add(v);
             }
         }
+        return result;
+    }
+    
+    /**
+     * Pass every vehicle record, archived ones first, to an action
+     * Archived records may be flyweight views that are only valid during the call,
+     * so scans over a mapped history do not copy records onto the heap
+     * @param action Action to run; copy a record with toVehicle() to keep it
+     */
+    public void forEachVehicle(Consumer<? super VehicleRecord> action) {
+        historyArchive.forEach(action);
+        vehicles.values().forEach(action);
+    }
+    
+    /**
+     * Find the vehicle records that match a filter, archived ones first
+     * Only matching records are copied to Vehicle objects
+     * @param filter Filter to apply to each record
+     * @return Matching vehicles
+     */
+    public ArrayList<Vehicle> findVehicles(Predicate<? super VehicleRecord> filter) {
+        ArrayList<Vehicle> result = new ArrayList<>();
+        forEachVehicle(record -> {
+            if (filter.test(record)) {
+                result.add(record.toVehicle());
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Get the vehicles that are not archived: the active set and recent history
+     * Never touches the archive on disk
+     * @return List of unarchived vehicles in insertion order
+     */
+    public ArrayList<Vehicle> getUnarchivedVehicles() {
+        return new ArrayList<>(vehicles.values());
+    }
+    
+    /**
+     * Get all vehicles with status IN
+     * @return List of vehicles currently in parking, in entry order
+     */
+    public ArrayList<Vehicle> getActiveVehicles() {
+        ArrayList<Vehicle> activeVehicles = new ArrayList<>(activeIndex.values());
+        Collections.sort(activeVehicles, Comparator.comparingLong(Vehicle::getRecordId));
         return activeVehicles;
     }
     
     /**
-     * Update a vehicle by vehicle number
+     * Update a vehicle by vehicle number and record it in the journal
      * @param vehicleNumber Vehicle number to find
      * @param updated Updated vehicle object
      * @return true if updated successfully, false otherwise
@@ -117,32 +712,42 @@ public class ParkingDataStore {
             return false;
         }
         
-        for (int i = 0; i < vehicles.size(); i++) {
-            Vehicle v = vehicles.get(i);
-            if (vehicleNumber.equals(v.getVehicleNumber())) {
-                // If slot changed, update slot occupancy
-                if (v.getSlotNumber() != updated.getSlotNumber()) {
-                    ParkingSlot oldSlot = getSlotByNumber(v.getSlotNumber());
-                    ParkingSlot newSlot = getSlotByNumber(updated.getSlotNumber());
-                    
-                    if (oldSlot != null) {
-                        oldSlot.setOccupied(false);
-                    }
-                    if (newSlot != null && !newSlot.isOccupied()) {
-                        newSlot.setOccupied(true);
-                    } else if (newSlot != null && newSlot.isOccupied()) {
-                        return false; // New slot is already occupied
-                    }
+        // Renaming a vehicle touches two stripes; take them in index order
+        int oldStripe = stripeFor(vehicleNumber);
+        int newStripe = stripeFor(updated.getVehicleNumber());
+        ReentrantLock first = vehicleLocks[Math.min(oldStripe, newStripe)];
+        ReentrantLock second = vehicleLocks[Math.max(oldStripe, newStripe)];
+        long journalSequence = NO_JOURNAL_ENTRY;
+        beginMutation(first, second);
+        try {
+            Vehicle v = getVehicleByNumber(vehicleNumber);
+            if (v == null) {
+                return false;
+            }
+            
+            // If slot changed, update slot occupancy
+            if (v.getSlotNumber() != updated.getSlotNumber() && v.getStatus() == VehicleStatus.IN) {
+                if (!occupySlot(updated.getSlotNumber())) {
+                    return false; // New slot is already occupied
                 }
-                vehicles.set(i, updated);
-                return true;
+                releaseSlot(v.getSlotNumber());
             }
+            
+            // Update in place so the record keeps its position in the list
+            unindexVehicle(v);
+            untrackRecord(v);
+            v.updateFrom(updated);
+            trackRecord(v);
+            indexVehicle(v);
+            journalSequence = appendJournalEntry(FileHandler.JOURNAL_UPDATE, vehicleNumber, v);
+            return true;
+        } finally {
+            endMutation(journalSequence, first, second);
         }
-        return false;
     }
     
     /**
-     * Delete a vehicle by vehicle number
+     * Delete a vehicle by vehicle number and record it in the journal
      * @param vehicleNumber Vehicle number to delete
      * @return true if deleted successfully, false otherwise
      */
@@ -151,24 +756,130 @@ public class ParkingDataStore {
             return false;
         }
         
-        for (int i = 0; i < vehicles.size(); i++) {
-            Vehicle v = vehicles.get(i);
-            if (vehicleNumber.equals(v.getVehicleNumber())) {
-                // Free up the slot
-                ParkingSlot slot = getSlotByNumber(v.getSlotNumber());
-                if (slot != null) {
-                    slot.setOccupied(false);
-                }
-                vehicles.remove(i);
-                return true;
+        ReentrantLock lock = vehicleLocks[stripeFor(vehicleNumber)];
+        long journalSequence = NO_JOURNAL_ENTRY;
+        beginMutation(lock);
+        try {
+            Vehicle v = getVehicleByNumber(vehicleNumber);
+            if (v == null) {
+                return false;
+            }
+            
+            // Free up the slot (a checked-out record no longer holds one)
+            if (v.getStatus() == VehicleStatus.IN) {
+                releaseSlot(v.getSlotNumber());
+            }
+            removeVehicle(v);
+            journalSequence = appendJournalEntry(FileHandler.JOURNAL_DELETE, vehicleNumber, null);
+            return true;
+        } finally {
+            endMutation(journalSequence, lock);
+        }
+    }
+    
+    /**
+     * Delete one particular record, such as a row picked from the vehicle list, and record it in the journal
+     * Unlike deleteVehicle(String), an earlier visit of a returning vehicle can be deleted
+     * without touching its current record
+     * @param record Record returned by this data store
+     * @return true if deleted successfully, false if it is archived or was already deleted
+     */
+    public boolean deleteRecord(Vehicle record) {
+        if (record == null) {
+            return false;
+        }
+        
+        ReentrantLock lock = vehicleLocks[stripeFor(record.getVehicleNumber())];
+        long journalSequence = NO_JOURNAL_ENTRY;
+        beginMutation(lock);
+        try {
+            // Archived records are copies that are not in the list; they cannot be deleted
+            if (vehicles.get(record.getRecordId()) != record) {
+                return false;
+            }
+            
+            if (record.getStatus() == VehicleStatus.IN) {
+                releaseSlot(record.getSlotNumber());
+            }
+            removeVehicle(record);
+            journalSequence = appendJournalEntry(FileHandler.JOURNAL_DELETE, record.getVehicleNumber(), record);
+            return true;
+        } finally {
+            endMutation(journalSequence, lock);
+        }
+    }
+    
+    /**
+     * Mark a parked vehicle as checked out, store its fee, free its slot and record it in the journal
+     * @param vehicleNumber Vehicle number to check out
+     * @param exitTime Exit time in epoch milliseconds
+     * @return The checked-out vehicle, or null if no vehicle with that number is parked
+     */
+    public Vehicle checkoutVehicle(String vehicleNumber, long exitTime) {
+        if (vehicleNumber == null) {
+            return null;
+        }
+        
+        ReentrantLock lock = vehicleLocks[stripeFor(vehicleNumber)];
+        long journalSequence = NO_JOURNAL_ENTRY;
+        beginMutation(lock);
+        try {
+            Vehicle v = activeIndex.get(Validator.normalizeVehicleNumber(vehicleNumber));
+            if (v == null) {
+                return null;
+            }
+            
+            unindexVehicle(v);
+            untrackRecord(v);
+            v.setExitTimeMillis(exitTime);
+            v.setStatus(VehicleStatus.OUT);
+            v.setFeeCents(FeeCalculator.toCents(FeeCalculator.calculateFee(v.getEntryTimeMillis(), exitTime)));
+            trackRecord(v);
+            indexVehicle(v);
+            releaseSlot(v.getSlotNumber());
+            journalSequence = appendJournalEntry(FileHandler.JOURNAL_UPDATE, v.getVehicleNumber(), v);
+            return v;
+        } finally {
+            endMutation(journalSequence, lock);
+        }
+    }
+    
+    /**
+     * Record payment of the fee for a checked-out vehicle and record it in the journal
+     * @param vehicleNumber Vehicle number that was checked out
+     * @param paymentMethod Payment method chosen at checkout
+     * @param paidAt Payment time in epoch milliseconds
+     * @return true if recorded, false if the latest record for that number is not checked out
+     */
+    public boolean recordPayment(String vehicleNumber, String paymentMethod, long paidAt) {
+        if (vehicleNumber == null || paymentMethod == null) {
+            return false;
+        }
+        
+        ReentrantLock lock = vehicleLocks[stripeFor(vehicleNumber)];
+        long journalSequence = NO_JOURNAL_ENTRY;
+        beginMutation(lock);
+        try {
+            Vehicle v = vehicleIndex.get(Validator.normalizeVehicleNumber(vehicleNumber));
+            if (v == null || v.getStatus() != VehicleStatus.OUT) {
+                return false;
             }
+            
+            // Fee totals don't change, so the ledger is not touched
+            v.setPaymentMethod(paymentMethod);
+            v.setPaidAtMillis(paidAt);
+            journalSequence = appendJournalEntry(FileHandler.JOURNAL_UPDATE, v.getVehicleNumber(), v);
+            return true;
+        } finally {
+            endMutation(journalSequence, lock);
         }
-        return false;
     }
     
     /**
      * Get vehicle by vehicle number
-     * @param vehicleNumber Vehicle number to search
+     * Prefers the vehicle currently parked under that number
+     * Archived records are not returned
+     * @param vehicleNumber Vehicle number to search (case-insensitive)
      * @return Vehicle if found, null otherwise
      */
     public Vehicle getVehicleByNumber(String vehicleNumber) {
@@ -176,12 +887,45 @@ public class ParkingDataStore {
             return null;
         }
         
-        for (Vehicle v : vehicles) {
-            if (vehicleNumber.equals(v.getVehicleNumber())) {
-                return v;
+        String key = Validator.normalizeVehicleNumber(vehicleNumber);
+        Vehicle active = activeIndex.get(key);
+        return active != null ? active : vehicleIndex.get(key);
+    }
+    
+    /**
+     * Find vehicles whose number contains (or starts with) a partial number
+     * Uses the plate search index instead of scanning every record; the archive is
+     * only read if one of its plates matches
+     * @param query Partial vehicle number (case-insensitive)
+     * @param prefixOnly true to match only numbers starting with the query
+     * @return Matching vehicles in insertion order, archived records first
+     */
+    public ArrayList<Vehicle> searchByVehicleNumber(String query, boolean prefixOnly) {
+        ArrayList<Long> ids = new ArrayList<>(plateSearchIndex.search(query, prefixOnly));
+        Collections.sort(ids);
+        
+        ArrayList<Vehicle> result = historyArchive.search(query, prefixOnly);
+        result.ensureCapacity(result.size() + ids.size());
+        for (Long id : ids) {
+            Vehicle v = vehicles.get(id);
+            if (v != null) {
+                result.add(v);
             }
         }
-        return null;
+        return result;
+    }
+    
+    /**
+     * Check if any record (parked or historical) uses a vehicle number
+     * @param vehicleNumber Vehicle number to check (case-insensitive)
+     * @return true if the number is known, false otherwise
+     */
+    public boolean containsVehicleNumber(String vehicleNumber) {
+        if (vehicleNumber == null) {
+            return false;
+        }
+        String key = Validator.normalizeVehicleNumber(vehicleNumber);
+        return vehicleIndex.containsKey(key) || historyArchive.containsPlate(key);
     }
     
     /**
@@ -190,12 +934,10 @@ public class ParkingDataStore {
      * @return ParkingSlot if found, null otherwise
      */
     public ParkingSlot getSlotByNumber(int slotNumber) {
-        for (ParkingSlot slot : parkingSlots) {
-            if (slot.getSlotNumber() == slotNumber) {
-                return slot;
-            }
+        if (slotNumber < 1 || slotNumber > parkingSlots.length) {
+            return null;
         }
-        return null;
+        return parkingSlots[slotNumber - 1];
     }
     
     /**
@@ -203,7 +945,9 @@ public class ParkingDataStore {
      * @return List of all parking slots
      */
     public ArrayList<ParkingSlot> getAllSlots() {
-        return new ArrayList<>(parkingSlots);
+        ArrayList<ParkingSlot> slots = new ArrayList<>(parkingSlots.length);
+        Collections.addAll(slots, parkingSlots);
+        return slots;
     }
     
     /**
@@ -211,21 +955,91 @@ public class ParkingDataStore {
      * @return List of available (unoccupied) slots
      */
     public ArrayList<ParkingSlot> getAvailableSlots() {
-        ArrayList<ParkingSlot> available = new ArrayList<>();
-        for (ParkingSlot slot : parkingSlots) {
-            if (!slot.isOccupied()) {
-                available.add(slot);
-            }
+        ArrayList<ParkingSlot> available = new ArrayList<>(getAvailableSlotsCount());
+        for (int i = nextClearBit(0); i < parkingSlots.length; i = nextClearBit(i + 1)) {
+            available.add(parkingSlots[i]);
         }
         return available;
     }
     
+    /**
+     * Get available slot numbers in ascending order
+     * @return List of available slot numbers
+     */
+    public ArrayList<Integer> getAvailableSlotNumbers() {
+        ArrayList<Integer> available = new ArrayList<>(getAvailableSlotsCount());
+        for (int i = nextClearBit(0); i < parkingSlots.length; i = nextClearBit(i + 1)) {
+            available.add(i + 1);
+        }
+        return available;
+    }
+    
+    /**
+     * Get the lowest-numbered free slot
+     * The search resumes from the last free slot found, so repeated calls are O(1) amortized
+     * The slot is not reserved; addVehicle fails if another gate takes it first
+     * @return Free slot number, or -1 if the parking is full
+     */
+    public int getNextFreeSlot() {
+        int hint = nextFreeHint.get();
+        int index = nextClearBit(hint);
+        // Only move the hint forward if no release lowered it meanwhile
+        nextFreeHint.compareAndSet(hint, index);
+        return index < parkingSlots.length ? index + 1 : -1;
+    }
+    
+    /**
+     * Get the running earnings totals
+     * @return Earnings ledger kept in step with the vehicle records
+     */
+    public EarningsLedger getEarningsLedger() {
+        return earningsLedger;
+    }
+    
+    /**
+     * Get the most recent entries without sorting the history
+     * Reads the archive only when the unarchived records are fewer than n, and then only
+     * its newest partitions
+     * @param n Maximum number of entries
+     * @return Up to n vehicles, latest entry time first
+     */
+    public ArrayList<Vehicle> getLatestEntries(int n) {
+        ArrayList<Vehicle> latest = entryTimeIndex.getLatest(n);
+        if (latest.size() >= n || historyArchive.getRecordCount() == 0) {
+            return latest;
+        }
+        
+        // A vehicle parked for days entered before some archived records, so the archive's
+        // n latest are merged with the unarchived ones rather than appended after them
+        ArrayList<Vehicle> merged = historyArchive.getLatestEntries(n);
+        merged.addAll(latest);
+        merged.sort(Comparator.comparingLong(Vehicle::getEntryTimeMillis).thenComparingLong(Vehicle::getRecordId).reversed());
+        return new ArrayList<>(merged.subList(0, Math.min(n, merged.size())));
+    }
+    
+    /**
+     * Get the vehicles that entered in a time range
+     * @param fromMillis Start of the range (inclusive)
+     * @param toMillis End of the range (exclusive)
+     * @return Vehicles in entry time order
+     */
+    public ArrayList<Vehicle> getEntriesBetween(long fromMillis, long toMillis) {
+        ArrayList<Vehicle> entries = entryTimeIndex.getBetween(fromMillis, toMillis);
+        ArrayList<Vehicle> archived = historyArchive.getBetween(fromMillis, toMillis);
+        if (archived.isEmpty()) {
+            return entries;
+        }
+        archived.addAll(entries);
+        archived.sort(Comparator.comparingLong(Vehicle::getEntryTimeMillis));
+        return archived;
+    }
+    
     /**
      * Get total number of slots
      * @return Total number of slots
      */
     public int getTotalSlots() {
-        return parkingSlots.size();
+        return parkingSlots.length;
     }
     
     /**
@@ -233,13 +1047,7 @@ public class ParkingDataStore {
      * @return Number of occupied slots
      */
     public int getOccupiedSlots() {
-        int count = 0;
-        for (ParkingSlot slot : parkingSlots) {
-            if (slot.isOccupied()) {
-                count++;
-            }
-        }
-        return count;
+        return occupiedCount.get();
     }
     
     /**
@@ -256,8 +1064,10 @@ public class ParkingDataStore {
      * @return true if occupied, false otherwise
      */
     public boolean isSlotOccupied(int slotNumber) {
-        ParkingSlot slot = getSlotByNumber(slotNumber);
-        return slot != null && slot.isOccupied();
+        if (slotNumber < 1 || slotNumber > parkingSlots.length) {
+            return false;
+        }
+        return (occupiedSlots.get((slotNumber - 1) >>> 6) & (1L << (slotNumber - 1))) != 0;
     }
 }
 
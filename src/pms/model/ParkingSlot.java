@@ -6,7 +6,7 @@ package pms.model;
  */
 public class ParkingSlot {
     private int slotNumber;
-    private boolean isOccupied;
+    private volatile boolean isOccupied;
     
     // Default constructor
     public ParkingSlot() {
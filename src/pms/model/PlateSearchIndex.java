@@ -0,0 +1,134 @@
+package pms.model;
+
+import pms.util.Validator;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * N-gram index over normalized vehicle numbers for substring and prefix search
+ * Every 1-, 2- and 3-character gram of a plate maps to the plates containing it;
+ * longer queries only verify the plates in their rarest trigram's posting
+ * Maintained by ParkingDataStore under the vehicle lock of the plate being changed
+ * @author uSer
+ */
+public class PlateSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    
+    private final ConcurrentHashMap<String, Set<Long>> plateRecords; // Normalized plate -> record ids
+    private final ConcurrentHashMap<String, Set<String>> gramPlates; // Gram -> normalized plates
+    
+    // Constructor
+    public PlateSearchIndex() {
+        this.plateRecords = new ConcurrentHashMap<>();
+        this.gramPlates = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Index a vehicle record under its vehicle number
+     * @param v Vehicle record (with its record id assigned)
+     */
+    void add(Vehicle v) {
+        String plate = Validator.normalizeVehicleNumber(v.getVehicleNumber());
+        Set<Long> ids = plateRecords.get(plate);
+        if (ids == null) {
+            ids = plateRecords.computeIfAbsent(plate, k -> ConcurrentHashMap.newKeySet());
+        }
+        if (ids.add(v.getRecordId()) && ids.size() == 1) {
+            // First record with this plate - add it to the gram postings
+            for (String gram : gramsOf(plate)) {
+                gramPlates.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(plate);
+            }
+        }
+    }
+    
+    /**
+     * Remove a vehicle record from the index
+     * Must be called with the vehicle number it was indexed under
+     * @param v Vehicle record
+     */
+    void remove(Vehicle v) {
+        String plate = Validator.normalizeVehicleNumber(v.getVehicleNumber());
+        Set<Long> ids = plateRecords.get(plate);
+        if (ids == null || !ids.remove(v.getRecordId()) || !ids.isEmpty()) {
+            return;
+        }
+        
+        // Last record with this plate - drop it from the gram postings
+        // Empty gram sets are kept; there are few distinct grams
+        plateRecords.remove(plate, ids);
+        for (String gram : gramsOf(plate)) {
+            Set<String> plates = gramPlates.get(gram);
+            if (plates != null) {
+                plates.remove(plate);
+            }
+        }
+    }
+    
+    /**
+     * Find the record ids of all plates containing a query
+     * @param query Partial vehicle number (case-insensitive)
+     * @param prefixOnly true to match only plates starting with the query
+     * @return Matching record ids, empty if none
+     */
+    public Set<Long> search(String query, boolean prefixOnly) {
+        if (Validator.isEmpty(query)) {
+            return Collections.emptySet();
+        }
+        String q = Validator.normalizeVehicleNumber(query);
+        
+        Set<String> candidates;
+        boolean verify;
+        if (q.length() <= GRAM_LENGTH) {
+            // Short queries are grams themselves
+            candidates = gramPlates.getOrDefault(q, Collections.<String>emptySet());
+            verify = prefixOnly;
+        } else {
+            candidates = smallestTrigramPosting(q);
+            verify = true; // Containing one trigram does not guarantee a substring match
+        }
+        
+        Set<Long> result = new HashSet<>();
+        for (String plate : candidates) {
+            if (verify && !(prefixOnly ? plate.startsWith(q) : plate.contains(q))) {
+                continue;
+            }
+            Set<Long> ids = plateRecords.get(plate);
+            if (ids != null) {
+                result.addAll(ids);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Get the smallest trigram posting of a query; every match is in it
+     */
+    private Set<String> smallestTrigramPosting(String q) {
+        Set<String> smallest = null;
+        for (int i = 0; i + GRAM_LENGTH <= q.length(); i++) {
+            Set<String> plates = gramPlates.get(q.substring(i, i + GRAM_LENGTH));
+            if (plates == null || plates.isEmpty()) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || plates.size() < smallest.size()) {
+                smallest = plates;
+            }
+        }
+        return smallest;
+    }
+    
+    /**
+     * Get every distinct gram of length 1 to GRAM_LENGTH in a plate
+     */
+    private static Set<String> gramsOf(String plate) {
+        Set<String> grams = new HashSet<>();
+        for (int length = 1; length <= GRAM_LENGTH; length++) {
+            for (int i = 0; i + length <= plate.length(); i++) {
+                grams.add(plate.substring(i, i + length));
+            }
+        }
+        return grams;
+    }
+}
@@ -1,34 +1,41 @@
 package pms.model;
 
+import pms.util.DateTimeUtil;
+
 /**
  * Represents a vehicle in the parking management system
+ * Entry and exit times are stored as epoch milliseconds
  * @author uSer
  */
-public class Vehicle {
+public class Vehicle implements VehicleRecord {
     private String vehicleNumber;
-    private String vehicleType; // Car, Bike, Van
+    private VehicleType vehicleType; // Car, Bike, Van or a configured type
     private int slotNumber;
-    private String entryTime;
-    private String exitTime; // Exit time when vehicle leaves
-    private String status; // "IN", "OUT"
+    private long entryTime;
+    private long exitTime; // Exit time when vehicle leaves, DateTimeUtil.NO_TIME while parked
+    private VehicleStatus status;
+    private long feeCents; // Fee charged at checkout, 0 while parked
+    private String paymentMethod; // Null until the fee is paid
+    private long paidAt; // DateTimeUtil.NO_TIME until the fee is paid
+    private long recordId; // Assigned by ParkingDataStore, not persisted
     
     // Default constructor
     public Vehicle() {
-        this.status = "IN";
+        this.status = VehicleStatus.IN;
     }
     
     // Parameterized constructor
-    public Vehicle(String vehicleNumber, String vehicleType, int slotNumber, String entryTime, String status) {
-        this.vehicleNumber = vehicleNumber;
-        this.vehicleType = vehicleType;
-        this.slotNumber = slotNumber;
-        this.entryTime = entryTime;
-        this.status = status;
-        this.exitTime = null;
+    public Vehicle(String vehicleNumber, VehicleType vehicleType, int slotNumber, String entryTime, VehicleStatus status) {
+        this(vehicleNumber, vehicleType, slotNumber, DateTimeUtil.parse(entryTime), DateTimeUtil.NO_TIME, status);
     }
     
     // Full parameterized constructor with exit time
-    public Vehicle(String vehicleNumber, String vehicleType, int slotNumber, String entryTime, String exitTime, String status) {
+    public Vehicle(String vehicleNumber, VehicleType vehicleType, int slotNumber, String entryTime, String exitTime, VehicleStatus status) {
+        this(vehicleNumber, vehicleType, slotNumber, DateTimeUtil.parse(entryTime), DateTimeUtil.parse(exitTime), status);
+    }
+    
+    // Full parameterized constructor with epoch times
+    public Vehicle(String vehicleNumber, VehicleType vehicleType, int slotNumber, long entryTime, long exitTime, VehicleStatus status) {
         this.vehicleNumber = vehicleNumber;
         this.vehicleType = vehicleType;
         this.slotNumber = slotNumber;
@@ -46,11 +53,11 @@ public class Vehicle {
         this.vehicleNumber = vehicleNumber;
     }
     
-    public String getVehicleType() {
+    public VehicleType getVehicleType() {
         return vehicleType;
     }
     
-    public void setVehicleType(String vehicleType) {
+    public void setVehicleType(VehicleType vehicleType) {
         this.vehicleType = vehicleType;
     }
     
@@ -62,39 +69,137 @@ public class Vehicle {
         this.slotNumber = slotNumber;
     }
     
+    /**
+     * Get entry time formatted for display
+     * @return Entry time (format: yyyy-MM-dd HH:mm:ss), or null if not set
+     */
     public String getEntryTime() {
-        return entryTime;
+        return DateTimeUtil.format(entryTime);
     }
     
     public void setEntryTime(String entryTime) {
+        this.entryTime = DateTimeUtil.parse(entryTime);
+    }
+    
+    public long getEntryTimeMillis() {
+        return entryTime;
+    }
+    
+    public void setEntryTimeMillis(long entryTime) {
         this.entryTime = entryTime;
     }
     
-    public String getStatus() {
+    public VehicleStatus getStatus() {
         return status;
     }
     
-    public void setStatus(String status) {
+    public void setStatus(VehicleStatus status) {
         this.status = status;
     }
     
+    /**
+     * Get exit time formatted for display
+     * @return Exit time (format: yyyy-MM-dd HH:mm:ss), or null if still parked
+     */
     public String getExitTime() {
-        return exitTime;
+        return DateTimeUtil.format(exitTime);
     }
     
     public void setExitTime(String exitTime) {
+        this.exitTime = DateTimeUtil.parse(exitTime);
+    }
+    
+    public long getExitTimeMillis() {
+        return exitTime;
+    }
+    
+    public void setExitTimeMillis(long exitTime) {
         this.exitTime = exitTime;
     }
     
+    public long getFeeCents() {
+        return feeCents;
+    }
+    
+    public void setFeeCents(long feeCents) {
+        this.feeCents = feeCents;
+    }
+    
+    /**
+     * Get the fee charged at checkout
+     * @return Fee amount (0 while parked)
+     */
+    public double getFee() {
+        return feeCents / 100.0;
+    }
+    
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+    
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+    
+    public long getPaidAtMillis() {
+        return paidAt;
+    }
+    
+    public void setPaidAtMillis(long paidAt) {
+        this.paidAt = paidAt;
+    }
+    
+    /**
+     * Check if the checkout fee has been paid
+     * @return true if a payment was recorded, false otherwise
+     */
+    public boolean isPaid() {
+        return paidAt != DateTimeUtil.NO_TIME;
+    }
+    
+    /**
+     * Check if the vehicle has an exit time
+     * @return true if exit time is set, false otherwise
+     */
+    public boolean hasExitTime() {
+        return exitTime != DateTimeUtil.NO_TIME;
+    }
+    
+    /**
+     * Copy all fields from another vehicle record
+     * @param other Vehicle to copy from
+     */
+    public void updateFrom(Vehicle other) {
+        this.vehicleNumber = other.vehicleNumber;
+        this.vehicleType = other.vehicleType;
+        this.slotNumber = other.slotNumber;
+        this.entryTime = other.entryTime;
+        this.exitTime = other.exitTime;
+        this.status = other.status;
+        this.feeCents = other.feeCents;
+        this.paymentMethod = other.paymentMethod;
+        this.paidAt = other.paidAt;
+    }
+    
+    long getRecordId() {
+        return recordId;
+    }
+    
+    void setRecordId(long recordId) {
+        this.recordId = recordId;
+    }
+    
     @Override
     public String toString() {
         return "Vehicle{" + 
                 "vehicleNumber='" + vehicleNumber + '\'' +
                 ", vehicleType='" + vehicleType + '\'' +
                 ", slotNumber=" + slotNumber +
-                ", entryTime='" + entryTime + '\'' +
-                ", exitTime='" + exitTime + '\'' +
+                ", entryTime='" + getEntryTime() + '\'' +
+                ", exitTime='" + getExitTime() + '\'' +
                 ", status='" + status + '\'' +
+                ", feeCents=" + feeCents +
+                ", paymentMethod='" + paymentMethod + '\'' +
                 '}';
     }
     
@@ -110,5 +215,10 @@ public class Vehicle {
     public int hashCode() {
         return vehicleNumber != null ? vehicleNumber.hashCode() : 0;
     }
+    
+    @Override
+    public Vehicle toVehicle() {
+        return this;
+    }
 }
 
@@ -0,0 +1,34 @@
+package pms.model;
+
+/**
+ * Read-only view of a vehicle record
+ * Implemented by Vehicle and by flyweight views over mapped history files; a view
+ * may be repositioned to another record after the call that handed it out returns,
+ * so callers that keep a record must copy it with toVehicle()
+ * @author uSer
+ */
+public interface VehicleRecord {
+    String getVehicleNumber();
+    
+    VehicleType getVehicleType();
+    
+    int getSlotNumber();
+    
+    long getEntryTimeMillis();
+    
+    long getExitTimeMillis();
+    
+    VehicleStatus getStatus();
+    
+    long getFeeCents();
+    
+    String getPaymentMethod();
+    
+    long getPaidAtMillis();
+    
+    /**
+     * Get the record as a Vehicle that can be kept
+     * @return This record if it is already a Vehicle, otherwise a copy
+     */
+    Vehicle toVehicle();
+}
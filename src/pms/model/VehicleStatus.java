@@ -0,0 +1,30 @@
+package pms.model;
+
+/**
+ * Parking status of a vehicle record
+ * Stored as its name (IN, OUT) in data files and as its ordinal in binary records
+ * @author uSer
+ */
+public enum VehicleStatus {
+    IN, // Parked
+    OUT; // Checked out
+    
+    /**
+     * Parse a stored status
+     * @param name Status name (case-insensitive)
+     * @return Status, or null if the name is not a status
+     */
+    public static VehicleStatus parse(String name) {
+        if (name == null) {
+            return null;
+        }
+        switch (name.trim().toUpperCase()) {
+            case "IN":
+                return IN;
+            case "OUT":
+                return OUT;
+            default:
+                return null;
+        }
+    }
+}
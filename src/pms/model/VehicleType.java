@@ -0,0 +1,111 @@
+package pms.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Vehicle type, with one shared instance per type so types compare by identity
+ * Works like an enum that can grow: Car, Bike and Van are built in, and more types
+ * (e.g. Truck, EV) can be defined with -Dpms.vehicleTypes=Truck,EV or define()
+ * Defined types are offered in forms and accepted by validation; other type names
+ * found in data files still get a shared instance, so old records keep their type
+ * @author uSer
+ */
+public final class VehicleType {
+    private static final ConcurrentHashMap<String, VehicleType> BY_KEY = new ConcurrentHashMap<>();
+    private static final CopyOnWriteArrayList<VehicleType> DEFINED = new CopyOnWriteArrayList<>();
+    
+    public static final VehicleType CAR = define("Car");
+    public static final VehicleType BIKE = define("Bike");
+    public static final VehicleType VAN = define("Van");
+    
+    static {
+        for (String name : System.getProperty("pms.vehicleTypes", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                define(name);
+            }
+        }
+    }
+    
+    private final String name;
+    private volatile boolean defined;
+    
+    // Constructor
+    private VehicleType(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Define a vehicle type, so it is offered in forms and accepted by validation
+     * @param name Type name, as displayed and stored
+     * @return The type (the existing one if the name is already known, ignoring case)
+     */
+    public static synchronized VehicleType define(String name) {
+        VehicleType type = of(name);
+        if (!type.defined) {
+            type.defined = true;
+            DEFINED.add(type);
+        }
+        return type;
+    }
+    
+    /**
+     * Get the shared instance for a type name, creating it for a name not seen before
+     * Used when records are loaded, so each type name is kept once
+     * @param name Type name (case-insensitive, surrounding spaces ignored)
+     * @return Vehicle type, or null if the name is null or blank
+     */
+    public static VehicleType of(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        VehicleType type = BY_KEY.get(name);
+        if (type != null) {
+            return type; // Exact name, the usual case when loading
+        }
+        String trimmed = name.trim();
+        type = BY_KEY.computeIfAbsent(trimmed.toUpperCase(), k -> new VehicleType(trimmed));
+        BY_KEY.putIfAbsent(name, type);
+        return type;
+    }
+    
+    /**
+     * Find a defined type by name, without creating one
+     * @param name Type name (case-insensitive, surrounding spaces ignored)
+     * @return Defined vehicle type, or null if there is none with that name
+     */
+    public static VehicleType lookup(String name) {
+        if (name == null) {
+            return null;
+        }
+        VehicleType type = BY_KEY.get(name.trim().toUpperCase());
+        return type != null && type.defined ? type : null;
+    }
+    
+    /**
+     * Get the defined types
+     * @return Defined types, built-in ones first
+     */
+    public static List<VehicleType> values() {
+        return new ArrayList<>(DEFINED);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Check if the type is defined (built in or configured) rather than only found in data
+     * @return true if defined
+     */
+    public boolean isDefined() {
+        return defined;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
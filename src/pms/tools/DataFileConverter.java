@@ -0,0 +1,48 @@
+package pms.tools;
+
+import pms.model.Vehicle;
+import pms.util.FileHandler;
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Converts vehicle data files between the text and binary formats
+ * The format of each file follows its name: .bin (or .bin.gz) is binary, anything else is text
+ * History partitions can be converted the same way, one file at a time
+ *
+ * Usage: java -cp ParkingManagementSystem.jar pms.tools.DataFileConverter INPUT OUTPUT
+ * e.g. parking_data.txt parking_data.bin, or parking_data.bin parking_data.txt
+ * The archive header of a data file is not carried over; convert the application's
+ * data file by running it once with the new -Dpms.data.format instead
+ * @author uSer
+ */
+public class DataFileConverter {
+    
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: DataFileConverter INPUT OUTPUT");
+            System.err.println("Files ending in .bin or .bin.gz are binary, others are text");
+            System.exit(2);
+        }
+        
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        if (!input.isFile()) {
+            System.err.println("Input file not found: " + input.getPath());
+            System.exit(1);
+        }
+        if (input.getAbsoluteFile().equals(output.getAbsoluteFile())) {
+            System.err.println("Input and output must be different files");
+            System.exit(1);
+        }
+        
+        long start = System.nanoTime();
+        ArrayList<Vehicle> vehicles = FileHandler.loadVehiclesFromFile(input);
+        if (!FileHandler.saveVehiclesToFile(output, vehicles)) {
+            System.exit(1);
+        }
+        System.out.printf("Converted %d records from %s (%d bytes) to %s (%d bytes) in %d ms%n",
+                vehicles.size(), input.getPath(), input.length(), output.getPath(), output.length(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,561 @@
+package pms.tools;
+
+import pms.controller.ParkingController;
+import pms.model.ParkingDataStore;
+import pms.model.Vehicle;
+import pms.model.VehicleStatus;
+import pms.model.VehicleType;
+import pms.util.DateTimeUtil;
+import pms.util.FileHandler;
+import pms.util.Validator;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless load generator for the parking controller
+ * Gate threads park and check out vehicles while dashboard threads poll the dashboard figures,
+ * either from synthetic arrival/dwell distributions or by replaying a recorded data file,
+ * with simulated time compressed by a speedup factor
+ * Reports throughput, latency percentiles and allocation per operation
+ *
+ * Usage: java -cp ParkingManagementSystem.jar pms.tools.LoadGenerator [options]
+ * Runs against a scratch data directory (a new temporary one unless --data-dir is given),
+ * never against the application's own data file
+ * @author uSer
+ */
+public class LoadGenerator {
+    // Operations in report order
+    private static final int ADD = 0;
+    private static final int CHECKOUT = 1;
+    private static final int FEE = 2;
+    private static final int OCCUPIED = 3;
+    private static final int TODAY_VEHICLES = 4;
+    private static final int TODAY_EARNINGS = 5;
+    private static final int TOTAL_EARNINGS = 6;
+    private static final int LAST_ENTRIES = 7;
+    private static final String[] OPERATION_NAMES = {"addVehicle", "checkoutVehicle", "calculateVehicleFee",
+        "getOccupiedSlots", "getTodayVehicles", "getTodayEarnings", "getTotalEarnings", "getLastNEntries"};
+    
+    private static final int SLOT_ATTEMPTS = 3; // Gates racing for the same free slot retry
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+    
+    // Options
+    private int gates = 8;
+    private int dashboards = 1;
+    private long refreshMillis = 1000;
+    private int durationSeconds = 60;
+    private double speedup = 600.0;
+    private int totalSlots = 50;
+    private long seed = 42L;
+    private TrafficDistribution arrivals = TrafficDistribution.parse("exp:20");
+    private TrafficDistribution dwell = TrafficDistribution.parse("lognormal:90,0.8");
+    private VehicleType[] mixTypes = {VehicleType.CAR, VehicleType.BIKE, VehicleType.VAN};
+    private double[] mixWeights = {60, 30, 10}; // Cumulative after parseMix
+    private File replayFile;
+    private File dataDir;
+    
+    // Run state
+    private ParkingController controller;
+    private final DelayQueue<Event> events = new DelayQueue<>();
+    private final AtomicLong nextVehicle = new AtomicLong();
+    private final AtomicLong turnedAway = new AtomicLong();
+    private volatile boolean running;
+    private long stopNanos;
+    
+    /**
+     * Run the load generator from the command line
+     * @param args Options, see usage()
+     */
+    public static void main(String[] args) {
+        LoadGenerator generator = new LoadGenerator();
+        if (!generator.parseOptions(args)) {
+            usage();
+            System.exit(2);
+        }
+        
+        // Must be set before FileHandler is first used
+        try {
+            if (generator.dataDir == null) {
+                generator.dataDir = Files.createTempDirectory("pms-load").toFile();
+            }
+        } catch (IOException e) {
+            System.err.println("Error creating data directory: " + e.getMessage());
+            System.exit(1);
+        }
+        System.setProperty("pms.data.dir", generator.dataDir.getAbsolutePath());
+        
+        if (!generator.run()) {
+            System.exit(1);
+        }
+    }
+    
+    private static void usage() {
+        System.err.println("Usage: LoadGenerator [options]");
+        System.err.println("  --gates N           Gate threads, each with its own arrival stream (default 8)");
+        System.err.println("  --arrivals DIST     Gap between arrivals at a gate, simulated seconds (default exp:20)");
+        System.err.println("  --dwell DIST        Parking duration, simulated minutes (default lognormal:90,0.8)");
+        System.err.println("  --mix TYPE=W,...    Vehicle type weights (default Car=60,Bike=30,Van=10)");
+        System.err.println("  --speedup X         Simulated seconds per real second (default 600)");
+        System.err.println("  --duration S        Real seconds to run; replays stop early when done (default 60)");
+        System.err.println("  --slots N           Parking slots (default 50)");
+        System.err.println("  --dashboards N      Dashboard polling threads (default 1)");
+        System.err.println("  --refresh-ms M      Dashboard polling interval (default 1000)");
+        System.err.println("  --replay FILE       Replay the entries and exits of a recorded parking_data.txt");
+        System.err.println("  --data-dir DIR      Data directory to run against (default: new temporary directory)");
+        System.err.println("  --seed N            Random seed (default 42)");
+        System.err.println("DIST is fixed:V, uniform:MIN,MAX, exp:MEAN or lognormal:MEDIAN,SIGMA");
+    }
+    
+    /**
+     * Parse command line options
+     * @param args Command line arguments
+     * @return true if all options are valid, false otherwise
+     */
+    private boolean parseOptions(String[] args) {
+        if (args.length % 2 != 0) {
+            return false;
+        }
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--gates":
+                        gates = Integer.parseInt(value);
+                        break;
+                    case "--arrivals":
+                        arrivals = TrafficDistribution.parse(value);
+                        break;
+                    case "--dwell":
+                        dwell = TrafficDistribution.parse(value);
+                        break;
+                    case "--mix":
+                        if (!parseMix(value)) {
+                            return false;
+                        }
+                        break;
+                    case "--speedup":
+                        speedup = Double.parseDouble(value);
+                        break;
+                    case "--duration":
+                        durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "--slots":
+                        totalSlots = Integer.parseInt(value);
+                        break;
+                    case "--dashboards":
+                        dashboards = Integer.parseInt(value);
+                        break;
+                    case "--refresh-ms":
+                        refreshMillis = Long.parseLong(value);
+                        break;
+                    case "--replay":
+                        replayFile = new File(value);
+                        break;
+                    case "--data-dir":
+                        dataDir = new File(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return arrivals != null && dwell != null && gates > 0 && dashboards >= 0 && refreshMillis > 0
+                && durationSeconds > 0 && speedup > 0 && totalSlots > 0
+                && (replayFile == null || replayFile.isFile());
+    }
+    
+    /**
+     * Parse a vehicle type mix such as Car=60,Bike=30,Van=10
+     */
+    private boolean parseMix(String value) {
+        String[] parts = value.split(",");
+        VehicleType[] types = new VehicleType[parts.length];
+        double[] weights = new double[parts.length];
+        double sum = 0.0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].split("=");
+            if (pair.length != 2 || !Validator.isValidVehicleType(pair[0].trim())) {
+                return false;
+            }
+            types[i] = VehicleType.lookup(pair[0]);
+            double weight = Double.parseDouble(pair[1].trim());
+            if (weight < 0) {
+                return false;
+            }
+            sum += weight;
+            weights[i] = sum;
+        }
+        if (sum <= 0) {
+            return false;
+        }
+        mixTypes = types;
+        mixWeights = weights;
+        return true;
+    }
+    
+    /**
+     * Run the configured load and print the report
+     * @return true if the run completed, false if the replay file could not be used
+     */
+    private boolean run() {
+        controller = new ParkingController(new ParkingDataStore(totalSlots));
+        long startNanos = System.nanoTime();
+        stopNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        
+        if (replayFile != null) {
+            if (!scheduleReplay(startNanos)) {
+                return false;
+            }
+        } else {
+            for (int gate = 0; gate < gates; gate++) {
+                Random random = new Random(seed + gate);
+                events.add(new Event(null, true, startNanos + simulatedToNanos(arrivals.sample(random) * 1000.0), random));
+            }
+        }
+        
+        // Start gate and dashboard threads, each recording into its own stats
+        running = true;
+        ArrayList<Thread> gateThreads = new ArrayList<>();
+        ArrayList<Thread> dashboardThreads = new ArrayList<>();
+        ArrayList<OperationStats[]> allStats = new ArrayList<>();
+        OperationStats[] lag = new OperationStats[gates];
+        for (int i = 0; i < gates; i++) {
+            OperationStats[] stats = newStats();
+            OperationStats gateLag = new OperationStats("schedule lag");
+            lag[i] = gateLag;
+            allStats.add(stats);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runGate(stats, gateLag);
+                }
+            }, "gate-" + i);
+            gateThreads.add(t);
+            t.start();
+        }
+        for (int i = 0; i < dashboards; i++) {
+            OperationStats[] stats = newStats();
+            allStats.add(stats);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runDashboard(stats);
+                }
+            }, "dashboard-" + i);
+            dashboardThreads.add(t);
+            t.start();
+        }
+        
+        joinAll(gateThreads);
+        running = false;
+        joinAll(dashboardThreads);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        controller.shutdown(); // Final snapshot and journal flush, outside the measured time
+        
+        // Merge per-thread stats and report
+        OperationStats[] totals = newStats();
+        for (OperationStats[] stats : allStats) {
+            for (int op = 0; op < totals.length; op++) {
+                totals[op].merge(stats[op]);
+            }
+        }
+        OperationStats totalLag = new OperationStats("schedule lag");
+        for (OperationStats gateLag : lag) {
+            totalLag.merge(gateLag);
+        }
+        printReport(totals, totalLag, elapsedNanos);
+        return true;
+    }
+    
+    /**
+     * Queue every entry and exit of the recording, compressed relative to its first entry
+     * @return false if the recording has no usable records
+     */
+    private boolean scheduleReplay(long startNanos) {
+        ArrayList<Vehicle> recorded = FileHandler.loadVehiclesFromFile(replayFile);
+        if (recorded.isEmpty()) {
+            System.err.println("No records to replay in " + replayFile);
+            return false;
+        }
+        long origin = Long.MAX_VALUE;
+        for (Vehicle v : recorded) {
+            origin = Math.min(origin, v.getEntryTimeMillis());
+        }
+        
+        for (Vehicle v : recorded) {
+            boolean leaves = v.getStatus() == VehicleStatus.OUT && v.hasExitTime();
+            long dwellMillis = leaves ? Math.max(0L, v.getExitTimeMillis() - v.getEntryTimeMillis()) : 0L;
+            Visit visit = new Visit(v.getVehicleNumber(), v.getVehicleType(), dwellMillis);
+            long arrivalNanos = startNanos + simulatedToNanos(v.getEntryTimeMillis() - origin);
+            events.add(new Event(visit, true, arrivalNanos, null));
+            if (leaves) {
+                events.add(new Event(visit, false, arrivalNanos + simulatedToNanos(dwellMillis), null));
+            }
+        }
+        System.out.println("Replaying " + recorded.size() + " records from " + replayFile);
+        return true;
+    }
+    
+    /**
+     * Gate thread: process due entries and exits until the run ends
+     */
+    private void runGate(OperationStats[] stats, OperationStats lag) {
+        try {
+            while (System.nanoTime() < stopNanos) {
+                Event event = events.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+                if (event == null) {
+                    if (replayFile != null && events.isEmpty()) {
+                        return; // Replay finished
+                    }
+                    continue;
+                }
+                lag.record(System.nanoTime() - event.dueNanos, 0L, true);
+                if (event.arrival) {
+                    arrive(event, stats);
+                } else {
+                    depart(event.visit, stats);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Park an arriving vehicle; for synthetic streams also schedule its exit and the next arrival
+     */
+    private void arrive(Event event, OperationStats[] stats) {
+        Visit visit = event.visit;
+        if (event.random != null) {
+            // Synthetic arrival: draw the vehicle, then continue this gate's stream
+            long dwellMillis = (long) (dwell.sample(event.random) * MILLIS_PER_MINUTE);
+            visit = new Visit("LG" + nextVehicle.incrementAndGet(), pickType(event.random), dwellMillis);
+            long gap = simulatedToNanos(arrivals.sample(event.random) * 1000.0);
+            events.add(new Event(null, true, event.dueNanos + gap, event.random));
+        }
+        
+        // Backdate the entry so the fee at checkout covers the whole simulated stay
+        long now = DateTimeUtil.now();
+        long realStay = TimeUnit.NANOSECONDS.toMillis(simulatedToNanos(visit.dwellMillis));
+        long entryTime = now - visit.dwellMillis + realStay;
+        
+        for (int attempt = 0; attempt < SLOT_ATTEMPTS; attempt++) {
+            int slot = controller.getNextFreeSlot();
+            if (slot == -1) {
+                turnedAway.incrementAndGet();
+                return;
+            }
+            Vehicle v = new Vehicle(visit.vehicleNumber, visit.vehicleType, slot, entryTime, DateTimeUtil.NO_TIME, VehicleStatus.IN);
+            
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            boolean added = controller.addVehicle(v);
+            record(stats[ADD], start, allocated, added || attempt < SLOT_ATTEMPTS - 1);
+            if (added) {
+                visit.parked = true;
+                if (event.random != null) {
+                    events.add(new Event(visit, false, System.nanoTime() + simulatedToNanos(visit.dwellMillis), null));
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Show the fee at the gate, then check the vehicle out
+     */
+    private void depart(Visit visit, OperationStats[] stats) {
+        if (!visit.parked) {
+            return; // Was turned away or failed to park
+        }
+        
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        double fee = controller.calculateVehicleFee(visit.vehicleNumber);
+        record(stats[FEE], start, allocated, fee >= 0);
+        
+        allocated = allocatedBytes();
+        start = System.nanoTime();
+        double charged = controller.checkoutVehicle(visit.vehicleNumber);
+        record(stats[CHECKOUT], start, allocated, charged >= 0);
+    }
+    
+    /**
+     * Dashboard thread: read the same figures as DashboardFrame.refreshData until the gates stop
+     */
+    private void runDashboard(OperationStats[] stats) {
+        while (running) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            controller.getOccupiedSlots();
+            record(stats[OCCUPIED], start, allocated, true);
+            
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            controller.getTodayVehicles();
+            record(stats[TODAY_VEHICLES], start, allocated, true);
+            
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            controller.getTodayEarnings();
+            record(stats[TODAY_EARNINGS], start, allocated, true);
+            
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            controller.getTotalEarnings();
+            record(stats[TOTAL_EARNINGS], start, allocated, true);
+            
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            controller.getLastNEntries(5);
+            record(stats[LAST_ENTRIES], start, allocated, true);
+            
+            try {
+                Thread.sleep(refreshMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private static void record(OperationStats stats, long startNanos, long allocatedBefore, boolean success) {
+        long latency = System.nanoTime() - startNanos;
+        stats.record(latency, allocatedBytes() - allocatedBefore, success);
+    }
+    
+    private VehicleType pickType(Random random) {
+        double r = random.nextDouble() * mixWeights[mixWeights.length - 1];
+        for (int i = 0; i < mixWeights.length; i++) {
+            if (r < mixWeights[i]) {
+                return mixTypes[i];
+            }
+        }
+        return mixTypes[mixTypes.length - 1];
+    }
+    
+    /**
+     * Convert simulated milliseconds to real nanoseconds
+     */
+    private long simulatedToNanos(double simulatedMillis) {
+        return (long) (simulatedMillis * 1_000_000.0 / speedup);
+    }
+    
+    private static OperationStats[] newStats() {
+        OperationStats[] stats = new OperationStats[OPERATION_NAMES.length];
+        for (int op = 0; op < stats.length; op++) {
+            stats[op] = new OperationStats(OPERATION_NAMES[op]);
+        }
+        return stats;
+    }
+    
+    private static void joinAll(ArrayList<Thread> threads) {
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private void printReport(OperationStats[] totals, OperationStats lag, long elapsedNanos) {
+        System.out.println();
+        System.out.printf("Load: %s, %d gates, %d dashboards, %d slots, speedup %.0fx, %.1f s%n",
+                replayFile != null ? "replay of " + replayFile : "arrivals " + arrivals + " s, dwell " + dwell + " min",
+                gates, dashboards, totalSlots, speedup, elapsedNanos / 1e9);
+        System.out.println("Data directory: " + dataDir.getAbsolutePath());
+        if (ALLOCATION_BEAN == null) {
+            System.out.println("Allocation is not measured: this JVM does not report per-thread allocation");
+        }
+        System.out.println(OperationStats.formatReportHeader());
+        for (OperationStats stats : totals) {
+            System.out.println(stats.formatReportLine(elapsedNanos, ALLOCATION_BEAN != null));
+        }
+        System.out.println(lag.formatReportLine(elapsedNanos, false));
+        System.out.println("Turned away (parking full): " + turnedAway.get());
+        System.out.println("Still parked: " + controller.getOccupiedSlots());
+    }
+    
+    /**
+     * Get the HotSpot thread bean if it can report per-thread allocation
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+        if (!hotspot.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        hotspot.setThreadAllocatedMemoryEnabled(true);
+        return hotspot;
+    }
+    
+    private static long allocatedBytes() {
+        return ALLOCATION_BEAN != null ? ALLOCATION_BEAN.getCurrentThreadAllocatedBytes() : 0L;
+    }
+    
+    /**
+     * One stay of a vehicle, shared by its entry and exit events
+     */
+    private static class Visit {
+        private final String vehicleNumber;
+        private final VehicleType vehicleType;
+        private final long dwellMillis; // Simulated
+        private volatile boolean parked;
+        
+        Visit(String vehicleNumber, VehicleType vehicleType, long dwellMillis) {
+            this.vehicleNumber = vehicleNumber;
+            this.vehicleType = vehicleType;
+            this.dwellMillis = dwellMillis;
+        }
+    }
+    
+    /**
+     * Entry or exit due at a real time
+     * Synthetic arrivals carry their gate's random source instead of a visit
+     */
+    private static class Event implements Delayed {
+        private final Visit visit;
+        private final boolean arrival;
+        private final long dueNanos;
+        private final Random random;
+        
+        Event(Visit visit, boolean arrival, long dueNanos, Random random) {
+            this.visit = visit;
+            this.arrival = arrival;
+            this.dueNanos = dueNanos;
+            this.random = random;
+        }
+        
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Event) other).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package pms.tools;
+
+import java.util.Arrays;
+
+/**
+ * Latency samples, failures and allocated bytes of one operation
+ * Each load generator thread records into its own instance; they are merged for the report
+ * @author uSer
+ */
+public class OperationStats {
+    private final String name;
+    private long[] latencies; // Nanoseconds, in recording order until sorted for the report
+    private int count;
+    private int failures;
+    private long allocatedBytes;
+    
+    // Constructor
+    public OperationStats(String name) {
+        this.name = name;
+        this.latencies = new long[1024];
+    }
+    
+    /**
+     * Record one call
+     * @param latencyNanos Time the call took
+     * @param allocated Bytes the calling thread allocated during the call
+     * @param success false if the call reported a failure
+     */
+    public void record(long latencyNanos, long allocated, boolean success) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+        allocatedBytes += allocated;
+        if (!success) {
+            failures++;
+        }
+    }
+    
+    /**
+     * Add another thread's samples to these
+     * @param other Stats of the same operation
+     */
+    public void merge(OperationStats other) {
+        if (count + other.count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, count + other.count);
+        }
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        failures += other.failures;
+        allocatedBytes += other.allocatedBytes;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getCount() {
+        return count;
+    }
+    
+    public int getFailures() {
+        return failures;
+    }
+    
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+    
+    /**
+     * Get a latency percentile (sorts the samples on first use)
+     * @param percentile Percentile between 0 and 100
+     * @return Latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0L;
+        }
+        Arrays.sort(latencies, 0, count);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return latencies[Math.max(0, Math.min(count, rank) - 1)];
+    }
+    
+    /**
+     * Format a report line
+     * @param elapsedNanos Length of the run
+     * @param measuresAllocation false for rows that are not calls (e.g. schedule lag)
+     * @return One line of the report table
+     */
+    public String formatReportLine(long elapsedNanos, boolean measuresAllocation) {
+        double seconds = elapsedNanos / 1e9;
+        String allocation = "-";
+        String allocationRate = "-";
+        if (measuresAllocation && count > 0) {
+            allocation = String.valueOf(allocatedBytes / count);
+            allocationRate = String.format("%.2f", allocatedBytes / seconds / (1024.0 * 1024.0));
+        }
+        return String.format("%-22s %10d %7d %10.1f %10.1f %10.1f %10.1f %10.1f %12s %11s",
+                name, count, failures, count / seconds,
+                getPercentile(50) / 1000.0, getPercentile(99) / 1000.0,
+                getPercentile(99.9) / 1000.0, getPercentile(100) / 1000.0,
+                allocation, allocationRate);
+    }
+    
+    /**
+     * Get the report table header
+     * @return Header line matching formatReportLine
+     */
+    public static String formatReportHeader() {
+        return String.format("%-22s %10s %7s %10s %10s %10s %10s %10s %12s %11s",
+                "Operation", "Count", "Failed", "ops/s", "p50 (us)", "p99 (us)",
+                "p999 (us)", "max (us)", "alloc B/op", "alloc MB/s");
+    }
+}
@@ -0,0 +1,97 @@
+package pms.tools;
+
+import java.util.Random;
+
+/**
+ * Random distribution for arrival gaps and dwell times of the load generator
+ * Specified as name:parameters, e.g. fixed:60, uniform:10,240, exp:20 or lognormal:90,0.8
+ * @author uSer
+ */
+public class TrafficDistribution {
+    private final String spec;
+    private final char kind;
+    private final double a;
+    private final double b;
+    
+    // Constructor
+    private TrafficDistribution(String spec, char kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+    
+    /**
+     * Parse a distribution spec
+     * fixed:value, uniform:min,max, exp:mean or lognormal:median,sigma
+     * @param spec Distribution spec
+     * @return Distribution, or null if the spec is invalid
+     */
+    public static TrafficDistribution parse(String spec) {
+        if (spec == null) {
+            return null;
+        }
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            return null;
+        }
+        String name = spec.substring(0, colon).trim().toLowerCase();
+        String[] params = spec.substring(colon + 1).split(",");
+        
+        try {
+            double a = Double.parseDouble(params[0].trim());
+            double b = params.length > 1 ? Double.parseDouble(params[1].trim()) : 0.0;
+            int expected;
+            char kind;
+            switch (name) {
+                case "fixed":
+                    kind = 'F';
+                    expected = 1;
+                    break;
+                case "uniform":
+                    kind = 'U';
+                    expected = 2;
+                    break;
+                case "exp":
+                    kind = 'E';
+                    expected = 1;
+                    break;
+                case "lognormal":
+                    kind = 'L';
+                    expected = 2;
+                    break;
+                default:
+                    return null;
+            }
+            if (params.length != expected || a < 0 || b < 0 || (kind == 'U' && b < a)) {
+                return null;
+            }
+            return new TrafficDistribution(spec, kind, a, b);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Draw a value
+     * @param random Random source of the calling stream
+     * @return Non-negative sample
+     */
+    public double sample(Random random) {
+        switch (kind) {
+            case 'U':
+                return a + (b - a) * random.nextDouble();
+            case 'E':
+                return -a * Math.log(1.0 - random.nextDouble());
+            case 'L':
+                return a * Math.exp(b * random.nextGaussian());
+            default:
+                return a;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -1,8 +1,6 @@
 package pms.util;
 
 import pms.model.Vehicle;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * Utility class for generating parking bills/receipts
@@ -39,7 +37,7 @@ public class BillGenerator {
         bill.append("PARKING TIME:\n");
         bill.append("  Entry Time:     ").append(vehicle.getEntryTime()).append("\n");
         
-        if (vehicle.getExitTime() != null && !vehicle.getExitTime().isEmpty()) {
+        if (vehicle.hasExitTime()) {
             bill.append("  Exit Time:      ").append(vehicle.getExitTime()).append("\n");
         } else {
             bill.append("  Exit Time:      ").append("Still Parked").append("\n");
@@ -49,22 +47,27 @@ public class BillGenerator {
         double hours = 0.0;
         double fee = 0.0;
         
-        if (vehicle.getExitTime() != null && !vehicle.getExitTime().isEmpty()) {
-            hours = FeeCalculator.calculateHours(vehicle.getEntryTime(), vehicle.getExitTime());
-            fee = FeeCalculator.calculateFee(vehicle.getEntryTime(), vehicle.getExitTime());
+        if (vehicle.hasExitTime()) {
+            hours = FeeCalculator.calculateHours(vehicle.getEntryTimeMillis(), vehicle.getExitTimeMillis());
+            fee = vehicle.getFee();
         } else {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String currentTime = sdf.format(new Date());
-            hours = FeeCalculator.calculateHours(vehicle.getEntryTime(), currentTime);
-            fee = FeeCalculator.calculateFeeToNow(vehicle.getEntryTime());
+            long now = DateTimeUtil.now();
+            hours = FeeCalculator.calculateHours(vehicle.getEntryTimeMillis(), now);
+            fee = FeeCalculator.calculateFee(vehicle.getEntryTimeMillis(), now);
         }
         
         bill.append("  Hours Parked:   ").append(String.format("%.2f", hours)).append(" hours\n\n");
         
         // Fee Information
         bill.append("PAYMENT INFORMATION:\n");
-        if (vehicle.getExitTime() != null && !vehicle.getExitTime().isEmpty()) {
+        if (vehicle.hasExitTime()) {
             bill.append("  Total Fee:      ").append(FeeCalculator.formatFee(fee)).append("\n");
+            if (vehicle.isPaid()) {
+                bill.append("  Paid By:        ").append(vehicle.getPaymentMethod()).append("\n");
+                bill.append("  Paid On:        ").append(DateTimeUtil.format(vehicle.getPaidAtMillis())).append("\n");
+            } else {
+                bill.append("  Payment:        Pending\n");
+            }
         } else {
             bill.append("  Estimated Fee:  ").append(FeeCalculator.formatFee(fee)).append("\n");
             bill.append("  (Fee calculated at checkout)\n");
@@ -78,8 +81,7 @@ public class BillGenerator {
         bill.append("  Daily Maximum:  ").append(FeeCalculator.formatFee(FeeCalculator.getDailyRate())).append("/day\n\n");
         
         // Footer
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        bill.append("Generated on: ").append(sdf.format(new Date())).append("\n");
+        bill.append("Generated on: ").append(DateTimeUtil.format(DateTimeUtil.now())).append("\n");
         bill.append("========================================\n");
         bill.append("        THANK YOU FOR PARKING!\n");
         bill.append("========================================\n");
@@ -123,7 +125,7 @@ public class BillGenerator {
         bill.append("<table style='width: 100%; border-collapse: collapse;'>");
         bill.append("<tr><td style='padding: 5px; font-weight: bold;'>Entry Time:</td><td style='padding: 5px;'>").append(vehicle.getEntryTime()).append("</td></tr>");
         
-        if (vehicle.getExitTime() != null && !vehicle.getExitTime().isEmpty()) {
+        if (vehicle.hasExitTime()) {
             bill.append("<tr><td style='padding: 5px; font-weight: bold;'>Exit Time:</td><td style='padding: 5px;'>").append(vehicle.getExitTime()).append("</td></tr>");
         } else {
             bill.append("<tr><td style='padding: 5px; font-weight: bold;'>Exit Time:</td><td style='padding: 5px; color: #ff6600;'>Still Parked</td></tr>");
@@ -131,12 +133,10 @@ public class BillGenerator {
         
         // Calculate hours
         double hours = 0.0;
-        if (vehicle.getExitTime() != null && !vehicle.getExitTime().isEmpty()) {
-            hours = FeeCalculator.calculateHours(vehicle.getEntryTime(), vehicle.getExitTime());
+        if (vehicle.hasExitTime()) {
+            hours = FeeCalculator.calculateHours(vehicle.getEntryTimeMillis(), vehicle.getExitTimeMillis());
         } else {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String currentTime = sdf.format(new Date());
-            hours = FeeCalculator.calculateHours(vehicle.getEntryTime(), currentTime);
+            hours = FeeCalculator.calculateHours(vehicle.getEntryTimeMillis(), DateTimeUtil.now());
         }
         
         bill.append("<tr><td style='padding: 5px; font-weight: bold;'>Hours Parked:</td><td style='padding: 5px; font-size: 16px; color: #0066cc;'><b>").append(String.format("%.2f", hours)).append(" hours</b></td></tr>");
@@ -148,11 +148,17 @@ public class BillGenerator {
         bill.append("<h3 style='color: #0066cc; margin-bottom: 10px;'>PAYMENT INFORMATION</h3>");
         
         double fee = 0.0;
-        if (vehicle.getExitTime() != null && !vehicle.getExitTime().isEmpty()) {
-            fee = FeeCalculator.calculateFee(vehicle.getEntryTime(), vehicle.getExitTime());
+        if (vehicle.hasExitTime()) {
+            fee = vehicle.getFee();
             bill.append("<p style='font-size: 18px; color: #cc0000;'><b>Total Fee: ").append(FeeCalculator.formatFee(fee)).append("</b></p>");
+            if (vehicle.isPaid()) {
+                bill.append("<p style='font-size: 12px;'>Paid by ").append(vehicle.getPaymentMethod())
+                    .append(" on ").append(DateTimeUtil.format(vehicle.getPaidAtMillis())).append("</p>");
+            } else {
+                bill.append("<p style='font-size: 12px; color: #666;'>Payment pending</p>");
+            }
         } else {
-            fee = FeeCalculator.calculateFeeToNow(vehicle.getEntryTime());
+            fee = FeeCalculator.calculateFeeToNow(vehicle.getEntryTimeMillis());
             bill.append("<p style='font-size: 18px; color: #ff6600;'><b>Estimated Fee: ").append(FeeCalculator.formatFee(fee)).append("</b></p>");
             bill.append("<p style='font-size: 12px; color: #666;'>(Fee calculated at checkout)</p>");
         }
@@ -169,9 +175,8 @@ public class BillGenerator {
         bill.append("</div>");
         
         // Footer
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         bill.append("<div style='text-align: center; border-top: 2px solid #000; padding-top: 10px; margin-top: 15px; color: #666; font-size: 12px;'>");
-        bill.append("<p>Generated on: ").append(sdf.format(new Date())).append("</p>");
+        bill.append("<p>Generated on: ").append(DateTimeUtil.format(DateTimeUtil.now())).append("</p>");
         bill.append("<p style='font-size: 14px; color: #0066cc;'><b>THANK YOU FOR PARKING!</b></p>");
         bill.append("</div>");
         
@@ -0,0 +1,164 @@
+package pms.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Utility class for converting between epoch times and display strings
+ * Times are stored as epoch milliseconds; strings are only used for display and the data file
+ * @author uSer
+ */
+public class DateTimeUtil {
+    
+    // Value stored when a time is not set (e.g. exit time of a parked vehicle)
+    public static final long NO_TIME = 0L;
+    
+    // Immutable and thread-safe, unlike SimpleDateFormat
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    /**
+     * Parse a date-time string in the local time zone
+     * @param dateTime Date-time string (format: yyyy-MM-dd HH:mm:ss)
+     * @return Epoch milliseconds, or NO_TIME if empty or invalid
+     */
+    public static long parse(String dateTime) {
+        if (dateTime == null || dateTime.trim().isEmpty()) {
+            return NO_TIME;
+        }
+        
+        try {
+            LocalDateTime local = parseFixedWidth(dateTime.trim());
+            if (local == null) {
+                local = LocalDateTime.parse(dateTime.trim(), DATE_TIME_FORMAT);
+            }
+            return local.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return NO_TIME;
+        }
+    }
+    
+    /**
+     * Parse yyyy-MM-dd HH:mm:ss without the formatter, which dominates data file loading
+     * @param dateTime Trimmed date-time string
+     * @return Local date-time, or null if it is not in exactly this form or not a valid
+     *         date (the formatter then decides, so results never differ)
+     */
+    private static LocalDateTime parseFixedWidth(String dateTime) {
+        if (dateTime.length() != 19 || dateTime.charAt(4) != '-' || dateTime.charAt(7) != '-'
+                || dateTime.charAt(10) != ' ' || dateTime.charAt(13) != ':' || dateTime.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(dateTime, 0, 4);
+        int month = digits(dateTime, 5, 2);
+        int day = digits(dateTime, 8, 2);
+        int hour = digits(dateTime, 11, 2);
+        int minute = digits(dateTime, 14, 2);
+        int second = digits(dateTime, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0 || year < 1 || month < 1 || month > 12
+                || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second);
+    }
+    
+    /**
+     * Read a run of decimal digits
+     * @return Value, or -1 if a character is not a digit
+     */
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    /**
+     * Format epoch milliseconds as a date-time string in the local time zone
+     * @param epochMillis Epoch milliseconds
+     * @return Formatted string (format: yyyy-MM-dd HH:mm:ss), or null if NO_TIME
+     */
+    public static String format(long epochMillis) {
+        if (epochMillis == NO_TIME) {
+            return null;
+        }
+        return DATE_TIME_FORMAT.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()));
+    }
+    
+    /**
+     * Check if a string is a valid date-time
+     * @param dateTime Date-time string to check
+     * @return true if it parses as yyyy-MM-dd HH:mm:ss, false otherwise
+     */
+    public static boolean isValid(String dateTime) {
+        return parse(dateTime) != NO_TIME;
+    }
+    
+    /**
+     * Get the current time truncated to whole seconds
+     * Matches the file format precision so fees don't change after a reload
+     * @return Current epoch milliseconds
+     */
+    public static long now() {
+        long millis = System.currentTimeMillis();
+        return millis - (millis % 1000);
+    }
+    
+    /**
+     * Get the start of the local day containing a time
+     * @param epochMillis Epoch milliseconds
+     * @return Epoch milliseconds of local midnight
+     */
+    public static long startOfDay(long epochMillis) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate();
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Get the start of the local day after the one containing a time
+     * @param epochMillis Epoch milliseconds
+     * @return Epoch milliseconds of the next local midnight
+     */
+    public static long startOfNextDay(long epochMillis) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate();
+        return day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Get the start of the local hour containing a time
+     * Works for zones whose offset is not a whole number of hours
+     * @param epochMillis Epoch milliseconds
+     * @return Epoch milliseconds of the start of the hour
+     */
+    public static long startOfHour(long epochMillis) {
+        ZonedDateTime time = Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault());
+        return time.truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Check if a time falls on the current local day
+     * @param epochMillis Epoch milliseconds
+     * @return true if today, false otherwise (including NO_TIME)
+     */
+    public static boolean isToday(long epochMillis) {
+        if (epochMillis == NO_TIME) {
+            return false;
+        }
+        return startOfDay(epochMillis) == startOfDay(System.currentTimeMillis());
+    }
+}
@@ -1,11 +1,11 @@
 package pms.util;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.Date;
 
 /**
  * Utility class for calculating parking fees
+ * Fees are computed from epoch milliseconds; string overloads parse via DateTimeUtil
  * @author uSer
  */
 public class FeeCalculator {
@@ -15,8 +15,7 @@ public class FeeCalculator {
     private static final double DAILY_RATE = 50.0; // $50 per day (maximum)
     private static final double MINIMUM_FEE = 2.0; // Minimum $2 for any parking
     
-    // Date format for parsing entry/exit times
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final long MILLIS_PER_HOUR = Duration.ofHours(1).toMillis();
     
     /**
      * Calculate parking fee based on entry and exit times
@@ -29,15 +28,14 @@ public class FeeCalculator {
             return 0.0;
         }
         
-        try {
-            Date entry = DATE_FORMAT.parse(entryTime);
-            Date exit = DATE_FORMAT.parse(exitTime);
-            
-            return calculateFee(entry, exit);
-        } catch (ParseException e) {
-            System.err.println("Error parsing dates: " + e.getMessage());
+        long entry = DateTimeUtil.parse(entryTime);
+        long exit = DateTimeUtil.parse(exitTime);
+        if (entry == DateTimeUtil.NO_TIME || exit == DateTimeUtil.NO_TIME) {
+            System.err.println("Error parsing dates: " + entryTime + ", " + exitTime);
             return 0.0;
         }
+        
+        return calculateFee(entry, exit);
     }
     
     /**
@@ -50,17 +48,27 @@ public class FeeCalculator {
         if (entryTime == null || exitTime == null) {
             return 0.0;
         }
+        return calculateFee(entryTime.getTime(), exitTime.getTime());
+    }
+    
+    /**
+     * Calculate parking fee based on entry and exit epoch times
+     * @param entryTime Entry time in epoch milliseconds
+     * @param exitTime Exit time in epoch milliseconds
+     * @return Calculated fee amount
+     */
+    public static double calculateFee(long entryTime, long exitTime) {
+        if (entryTime == DateTimeUtil.NO_TIME || exitTime == DateTimeUtil.NO_TIME) {
+            return 0.0;
+        }
         
         // Ensure exit time is after entry time
-        if (exitTime.before(entryTime)) {
+        if (exitTime < entryTime) {
             return 0.0;
         }
         
-        // Calculate time difference in milliseconds
-        long timeDifference = exitTime.getTime() - entryTime.getTime();
-        
         // Convert to hours (with decimal precision)
-        double hours = timeDifference / (1000.0 * 60.0 * 60.0);
+        double hours = toHours(entryTime, exitTime);
         
         // Calculate fee
         double fee = 0.0;
@@ -91,6 +99,15 @@ public class FeeCalculator {
         return Math.round(fee * 100.0) / 100.0; // Round to 2 decimal places
     }
     
+    /**
+     * Convert a fee amount to whole cents
+     * @param fee Fee amount
+     * @return Fee in cents
+     */
+    public static long toCents(double fee) {
+        return Math.round(fee * 100.0);
+    }
+    
     /**
      * Calculate parking fee from entry time to current time
      * @param entryTime Entry time string (format: yyyy-MM-dd HH:mm:ss)
@@ -101,14 +118,21 @@ public class FeeCalculator {
             return 0.0;
         }
         
-        try {
-            Date entry = DATE_FORMAT.parse(entryTime);
-            Date now = new Date();
-            return calculateFee(entry, now);
-        } catch (ParseException e) {
-            System.err.println("Error parsing entry time: " + e.getMessage());
+        long entry = DateTimeUtil.parse(entryTime);
+        if (entry == DateTimeUtil.NO_TIME) {
+            System.err.println("Error parsing entry time: " + entryTime);
             return 0.0;
         }
+        return calculateFeeToNow(entry);
+    }
+    
+    /**
+     * Calculate parking fee from entry time to current time
+     * @param entryTime Entry time in epoch milliseconds
+     * @return Calculated fee amount
+     */
+    public static double calculateFeeToNow(long entryTime) {
+        return calculateFee(entryTime, DateTimeUtil.now());
     }
     
     /**
@@ -122,17 +146,33 @@ public class FeeCalculator {
             return 0.0;
         }
         
-        try {
-            Date entry = DATE_FORMAT.parse(entryTime);
-            Date exit = DATE_FORMAT.parse(exitTime);
-            
-            long timeDifference = exit.getTime() - entry.getTime();
-            double hours = timeDifference / (1000.0 * 60.0 * 60.0);
-            
-            return Math.round(hours * 100.0) / 100.0;
-        } catch (ParseException e) {
+        long entry = DateTimeUtil.parse(entryTime);
+        long exit = DateTimeUtil.parse(exitTime);
+        if (entry == DateTimeUtil.NO_TIME || exit == DateTimeUtil.NO_TIME) {
             return 0.0;
         }
+        return calculateHours(entry, exit);
+    }
+    
+    /**
+     * Calculate hours parked
+     * @param entryTime Entry time in epoch milliseconds
+     * @param exitTime Exit time in epoch milliseconds
+     * @return Hours parked (rounded to 2 decimal places)
+     */
+    public static double calculateHours(long entryTime, long exitTime) {
+        if (entryTime == DateTimeUtil.NO_TIME || exitTime == DateTimeUtil.NO_TIME) {
+            return 0.0;
+        }
+        double hours = toHours(entryTime, exitTime);
+        return Math.round(hours * 100.0) / 100.0;
+    }
+    
+    /**
+     * Convert the time between two epoch times to fractional hours
+     */
+    private static double toHours(long entryTime, long exitTime) {
+        return (exitTime - entryTime) / (double) MILLIS_PER_HOUR;
     }
     
     /**
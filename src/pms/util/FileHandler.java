@@ -1,64 +1,728 @@
 package pms.util;
 
+import pms.jfr.DataFileLoadEvent;
+import pms.jfr.DataFileSaveEvent;
+import pms.metrics.Metrics;
 import pms.model.Vehicle;
+import pms.model.VehicleStatus;
+import pms.model.VehicleType;
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Handles file-based data persistence for vehicles
- * Saves and loads vehicle data to/from a text file
+ * Saves and loads vehicle data to/from a text file, or a binary file (see VehicleRecordCodec)
+ * when -Dpms.data.format=binary; files ending in .bin are binary wherever they are read
+ * Files ending in .dat hold fixed-size slots for memory-mapped reading (see MappedRecordFile)
+ * Mutations are appended to a journal and folded into the data file on compaction
+ * Every file is written to a temporary file, synced and renamed over the old one, so a crash
+ * leaves either the old or the new file. Snapshots carry an id and end in a record count and
+ * checksum; the previous snapshot and journal are kept, and recoverSnapshot() falls back to
+ * them when the latest snapshot is damaged
+ * Older checked-out records are moved to immutable per-day history partitions in history/,
+ * listed in a small manifest so a partition is only read when a query needs it
  * @author uSer
  */
 public class FileHandler {
-    private static final String DATA_FILE = "parking_data.txt";
+    // Files live in the working directory unless -Dpms.data.dir points elsewhere
+    private static final String DATA_DIR = System.getProperty("pms.data.dir");
+    private static final boolean BINARY_FORMAT = "binary".equalsIgnoreCase(System.getProperty("pms.data.format"));
+    private static final String RECORD_FILE_EXTENSION = BINARY_FORMAT ? ".bin" : ".txt";
+    private static final File DATA_FILE = dataFile("parking_data" + RECORD_FILE_EXTENSION);
+    private static final File OTHER_FORMAT_DATA_FILE = dataFile(BINARY_FORMAT ? "parking_data.txt" : "parking_data.bin");
+    private static final File JOURNAL_FILE = dataFile("parking_data.journal");
+    private static final File PREVIOUS_JOURNAL_FILE = siblingFile(JOURNAL_FILE, "prev");
+    private static final File HISTORY_DIR = dataFile("history");
+    private static final File MANIFEST_FILE = new File(HISTORY_DIR, "manifest.txt");
+    
+    // First line of a text data file: #snapshot|snapshotId|manifestGeneration
+    // (older files have #archive|manifestGeneration or no header). A journal starts with #snapshot|snapshotId
+    private static final String SNAPSHOT_HEADER = "#snapshot|";
+    private static final String ARCHIVE_HEADER = "#archive|";
+    
+    // Last line of a text data file with a snapshot header: #end|recordCount|CRC32C of the record lines
+    private static final String SNAPSHOT_TRAILER = "#end|";
+    
+    // Journal operation codes
+    public static final char JOURNAL_ADD = 'A';
+    public static final char JOURNAL_UPDATE = 'U';
+    public static final char JOURNAL_DELETE = 'D';
+    
+    // Fields in a full record; older files have 5 or 6
+    private static final int RECORD_FIELDS = 9;
+    
+    private static final int BINARY_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_BUFFER_BYTES = Integer.MAX_VALUE - 8; // Largest array the VM allocates
+    
+    // Id of the latest snapshot on disk; journal entries written now follow it
+    private static volatile long snapshotId;
+    
+    /**
+     * Resolve a data file name against the data directory
+     * @param name File name
+     * @return File in the data directory (or the working directory)
+     */
+    private static File dataFile(String name) {
+        return DATA_DIR != null ? new File(DATA_DIR, name) : new File(name);
+    }
+    
+    /**
+     * Name a file next to another, keeping its extensions: parking_data.txt becomes parking_data.tag.txt
+     * @param file File to name the sibling after
+     * @param tag Tag to insert after the base name
+     * @return Sibling file in the same directory
+     */
+    private static File siblingFile(File file, String tag) {
+        String name = file.getName();
+        int dot = name.indexOf('.');
+        String sibling = dot < 0 ? name + "." + tag : name.substring(0, dot) + "." + tag + name.substring(dot);
+        return new File(file.getAbsoluteFile().getParentFile(), sibling);
+    }
     
     /**
      * Saves a list of vehicles to a file
-     * Format: vehicleNumber|vehicleType|slotNumber|entryTime|exitTime|status
+     * Format: vehicleNumber|vehicleType|slotNumber|entryTime|exitTime|status|feeCents|paymentMethod|paidAt
      * @param vehicles List of vehicles to save
      * @return true if saved successfully, false otherwise
      */
     public static boolean saveVehiclesToFile(List<Vehicle> vehicles) {
+        return saveVehiclesToFile(vehicles, 0);
+    }
+    
+    /**
+     * Saves a list of vehicles to the data file, recording which history generation is committed
+     * Partitions of later generations (left by an interrupted compaction) are ignored on load
+     * @param vehicles List of vehicles to save
+     * @param archiveGeneration History manifest generation the data file relies on
+     * @return true if saved successfully, false otherwise
+     */
+    public static synchronized boolean saveVehiclesToFile(List<Vehicle> vehicles, int archiveGeneration) {
+        // The replaced snapshot is kept as the previous one, for recoverSnapshot()
+        long nextSnapshotId = snapshotId + 1;
+        if (!writeVehicles(DATA_FILE, vehicles, archiveGeneration, nextSnapshotId, siblingFile(DATA_FILE, "prev"))) {
+            return false;
+        }
+        snapshotId = nextSnapshotId;
+        return true;
+    }
+    
+    /**
+     * Saves vehicles to any file, in binary if its name ends in .bin (or .bin.gz), as text otherwise
+     * Used by the data file converter
+     * @param file File to write
+     * @param vehicles List of vehicles to save
+     * @return true if saved successfully, false otherwise
+     */
+    public static boolean saveVehiclesToFile(File file, List<Vehicle> vehicles) {
+        return writeVehicles(file, vehicles, 0, 0L, null);
+    }
+    
+    /**
+     * Write vehicle records to a temporary file and rename it over the file
+     * @param file File to write
+     * @param vehicles Vehicles to write
+     * @param archiveGeneration Manifest generation to record in the header, 0 for none
+     * @param snapshotId Snapshot id to record in the header, 0 for none
+     * @param previous File to keep the replaced file as, or null to discard it
+     * @return true if saved successfully, false otherwise (the file is unchanged)
+     */
+    private static boolean writeVehicles(File file, List<Vehicle> vehicles, int archiveGeneration, long snapshotId,
+            File previous) {
         if (vehicles == null) {
             return false;
         }
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_FILE))) {
+        DataFileSaveEvent event = new DataFileSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        File temp = siblingFile(file, "tmp");
+        int records = 0;
+        boolean saved = false;
+        if (isMappedRecordFile(file)) {
+            records = MappedRecordFile.write(temp, vehicles);
+            saved = records >= 0;
+        } else if (isBinaryFile(file)) {
+            records = writeBinary(temp, vehicles, archiveGeneration, snapshotId);
+            saved = records >= 0;
+        } else {
+            try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(openOutput(temp), StandardCharsets.UTF_8)))) {
+                CRC32C crc = new CRC32C();
+                writer.println(SNAPSHOT_HEADER + snapshotId + "|" + archiveGeneration);
+                for (Vehicle v : vehicles) {
+                    if (v != null) {
+                        String line = formatVehicleRecord(v);
+                        writer.println(line);
+                        updateChecksum(crc, line);
+                        records++;
+                    }
+                }
+                writer.println(SNAPSHOT_TRAILER + records + "|" + Integer.toHexString((int) crc.getValue()));
+                saved = !writer.checkError();
+            } catch (IOException e) {
+                System.err.println("Error saving vehicles to file: " + e.getMessage());
+            }
+        }
+        if (saved) {
+            saved = replaceFile(temp, file, previous);
+        } else {
+            temp.delete();
+        }
+        
+        long bytes = saved ? file.length() : 0L;
+        if (saved) {
+            Metrics.SAVE_LATENCY.recordSince(start);
+            Metrics.SAVES.increment();
+            Metrics.BYTES_WRITTEN.add(bytes);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = file.getPath();
+            event.records = Math.max(records, 0);
+            event.bytes = bytes;
+            event.success = saved;
+            event.commit();
+        }
+        return saved;
+    }
+    
+    /**
+     * Write vehicle records in the binary format
+     * @return Number of records written, or -1 on error
+     */
+    private static int writeBinary(File file, List<Vehicle> vehicles, int archiveGeneration, long snapshotId) {
+        VehicleRecordCodec codec = new VehicleRecordCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY_BUFFER_BYTES);
+        CRC32C crc = new CRC32C();
+        int records = 0;
+        try (WritableByteChannel channel = Channels.newChannel(openOutput(file))) {
+            VehicleRecordCodec.writeHeader(buffer, archiveGeneration, snapshotId);
+            int recordsFrom = buffer.position();
             for (Vehicle v : vehicles) {
-                if (v != null) {
-                    String exitTime = v.getExitTime() != null ? v.getExitTime() : "";
-                    writer.println(
-                        v.getVehicleNumber() + "|" +
-                        v.getVehicleType() + "|" +
-                        v.getSlotNumber() + "|" +
-                        v.getEntryTime() + "|" +
-                        exitTime + "|" +
-                        v.getStatus()
-                    );
+                if (v == null) {
+                    continue;
+                }
+                if (buffer.remaining() < VehicleRecordCodec.MAX_RECORD_BYTES) {
+                    crc.update(buffer.duplicate().flip().position(recordsFrom));
+                    drain(buffer, channel);
+                    recordsFrom = 0;
                 }
+                codec.encode(v, buffer);
+                records++;
             }
-            return true;
+            crc.update(buffer.duplicate().flip().position(recordsFrom));
+            if (buffer.remaining() < VehicleRecordCodec.TRAILER_BYTES) {
+                drain(buffer, channel);
+            }
+            VehicleRecordCodec.writeTrailer(buffer, records, (int) crc.getValue());
+            drain(buffer, channel);
+            return records;
         } catch (IOException e) {
             System.err.println("Error saving vehicles to file: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    /**
+     * Add a text record line, with its line terminator, to a checksum
+     * The terminator counts as a single newline, so the checksum does not depend on the platform
+     */
+    private static void updateChecksum(CRC32C crc, String line) {
+        crc.update(line.getBytes(StandardCharsets.UTF_8));
+        crc.update('\n');
+    }
+    
+    /**
+     * Sync a fully written temporary file and rename it over the file it replaces
+     * @param temp Temporary file
+     * @param file File to replace
+     * @param previous File to keep the replaced file as, or null to discard it
+     * @return true if the file is replaced, false otherwise (the temporary file is deleted)
+     */
+    private static boolean replaceFile(File temp, File file, File previous) {
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            if (previous != null && file.exists()) {
+                moveReplacing(file, previous);
+            }
+            moveReplacing(temp, file);
+            syncDirectory(file);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving " + file.getName() + ": " + e.getMessage());
+            temp.delete();
             return false;
         }
     }
     
     /**
-     * Loads vehicles from a file
+     * Rename a file over another, atomically where the file system supports it
+     * Elsewhere the target is replaced by a plain move; recoverSnapshot() covers the gap
+     */
+    private static void moveReplacing(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Sync the directory of a file so a rename in it survives a crash
+     * Not every platform can open a directory; the rename is still atomic there
+     */
+    private static void syncDirectory(File file) {
+        try (FileChannel channel = FileChannel.open(file.getAbsoluteFile().getParentFile().toPath(),
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+    
+    /**
+     * Formats a vehicle as a single data file record
+     * @param v Vehicle to format
+     * @return Pipe-delimited record (without line terminator)
+     */
+    public static String formatVehicleRecord(Vehicle v) {
+        String exitTime = v.hasExitTime() ? v.getExitTime() : "";
+        String paymentMethod = v.getPaymentMethod() != null ? v.getPaymentMethod() : "";
+        String paidAt = v.isPaid() ? DateTimeUtil.format(v.getPaidAtMillis()) : "";
+        String vehicleType = v.getVehicleType() != null ? v.getVehicleType().getName() : "";
+        return v.getVehicleNumber() + "|" +
+               vehicleType + "|" +
+               v.getSlotNumber() + "|" +
+               v.getEntryTime() + "|" +
+               exitTime + "|" +
+               v.getStatus() + "|" +
+               v.getFeeCents() + "|" +
+               paymentMethod + "|" +
+               paidAt;
+    }
+    
+    /**
+     * Parses a vehicle record from already split fields
+     * Supports old formats (5 parts, 6 parts with exitTime) and the full 9-part format
+     * For old checked-out records the fee is computed once here, since it was never stored
+     * @param parts Record fields
+     * @param offset Index of the vehicle number field
+     * @return Parsed vehicle, or null if the record is malformed
+     */
+    static Vehicle parseVehicleRecord(String[] parts, int offset) {
+        int length = parts.length - offset;
+        if (length != 5 && length != 6 && length != RECORD_FIELDS) {
+            return null;
+        }
+        
+        try {
+            String vehicleNumber = parts[offset];
+            VehicleType vehicleType = VehicleType.of(parts[offset + 1]);
+            int slotNumber = Integer.parseInt(parts[offset + 2]);
+            long entryTime = DateTimeUtil.parse(parts[offset + 3]);
+            String exitField = length >= 6 ? parts[offset + 4] : "";
+            long exitTime = DateTimeUtil.parse(exitField);
+            VehicleStatus status = VehicleStatus.parse(length >= 6 ? parts[offset + 5] : parts[offset + 4]);
+            
+            // Times, type and status are parsed once here; types and statuses are shared instances
+            if (status == null || entryTime == DateTimeUtil.NO_TIME || (!exitField.isEmpty() && exitTime == DateTimeUtil.NO_TIME)) {
+                return null;
+            }
+            Vehicle vehicle = new Vehicle(vehicleNumber, vehicleType, slotNumber, entryTime, exitTime, status);
+            
+            if (length == RECORD_FIELDS) {
+                String paidAtField = parts[offset + 8];
+                long paidAt = DateTimeUtil.parse(paidAtField);
+                if (!paidAtField.isEmpty() && paidAt == DateTimeUtil.NO_TIME) {
+                    return null;
+                }
+                vehicle.setFeeCents(Long.parseLong(parts[offset + 6]));
+                vehicle.setPaymentMethod(parts[offset + 7].isEmpty() ? null : parts[offset + 7]);
+                vehicle.setPaidAtMillis(paidAt);
+            } else if (status == VehicleStatus.OUT && exitTime != DateTimeUtil.NO_TIME) {
+                vehicle.setFeeCents(FeeCalculator.toCents(FeeCalculator.calculateFee(entryTime, exitTime)));
+            }
+            return vehicle;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Loads the latest intact snapshot and the journal entries written since it
+     * Snapshots are tried newest first. One whose record count or checksum does not match is
+     * renamed to *.damaged.* and the previous snapshot is used instead, with both journals.
+     * Snapshots only hold the active set, so recovery reads no more than it plus the journal tail
+     * @return Recovered snapshot; its records are empty if there is no data file
+     */
+    public static synchronized Snapshot recoverSnapshot() {
+        long start = System.nanoTime();
+        ArrayList<Snapshot> candidates = new ArrayList<>();
+        for (File file : new File[] {DATA_FILE, OTHER_FORMAT_DATA_FILE,
+                siblingFile(DATA_FILE, "prev"), siblingFile(OTHER_FORMAT_DATA_FILE, "prev")}) {
+            if (file.exists()) {
+                Snapshot candidate = new Snapshot(file);
+                candidate.snapshotId = readSnapshotId(file);
+                candidates.add(candidate);
+            }
+        }
+        // Newest first; files without an id (older versions) by modification time
+        candidates.sort(Comparator.comparingLong((Snapshot c) -> c.snapshotId)
+                .thenComparingLong(c -> c.file.lastModified()).reversed());
+        
+        Snapshot loaded = null;
+        ArrayList<Snapshot> damaged = new ArrayList<>();
+        long highestSnapshotId = 0L;
+        for (Snapshot candidate : candidates) {
+            highestSnapshotId = Math.max(highestSnapshotId, candidate.snapshotId);
+            if (loaded != null) {
+                continue;
+            }
+            readSnapshot(candidate);
+            if (candidate.intact) {
+                loaded = candidate;
+            } else {
+                System.err.println("Data file " + candidate.file.getName() + " is damaged (record count or checksum mismatch)");
+                damaged.add(candidate);
+            }
+        }
+        
+        if (loaded == null) {
+            // Nothing intact: keep what can be read from the newest file
+            loaded = damaged.isEmpty() ? new Snapshot(DATA_FILE) : damaged.get(0);
+        } else {
+            for (Snapshot candidate : damaged) {
+                File aside = siblingFile(candidate.file, "damaged");
+                System.err.println("Recovering from " + loaded.file.getName() + "; moving the damaged file to " + aside.getName());
+                try {
+                    Files.move(candidate.file.toPath(), aside.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    System.err.println("Error moving damaged data file: " + e.getMessage());
+                }
+                loaded.recovered = true;
+            }
+        }
+        
+        // Replay the journals that follow the loaded snapshot: its own, then the next snapshot's
+        // (present when the next snapshot is damaged). A journal without a header predates snapshot ids
+        JournalFile journal = readJournal(JOURNAL_FILE);
+        JournalFile previousJournal = readJournal(PREVIOUS_JOURNAL_FILE);
+        for (long id = loaded.snapshotId; id <= loaded.snapshotId + 1; id++) {
+            if (journal.snapshotId == id || (journal.snapshotId < 0 && id == loaded.snapshotId && !loaded.recovered)) {
+                loaded.journal.addAll(journal.entries);
+            } else if (previousJournal.snapshotId == id) {
+                loaded.journal.addAll(previousJournal.entries);
+            }
+        }
+        
+        // New snapshots must be numbered after every existing one, damaged or not
+        snapshotId = highestSnapshotId;
+        Metrics.LOAD_LATENCY.recordSince(start);
+        return loaded;
+    }
+    
+    /**
+     * Loads vehicles from a data file other than the application's (e.g. a recording to replay)
+     * @param file Data file to read
      * @return List of vehicles loaded from file, empty list if file doesn't exist or error occurs
      */
-    public static ArrayList<Vehicle> loadVehiclesFromFile() {
-        ArrayList<Vehicle> vehicles = new ArrayList<>();
-        File file = new File(DATA_FILE);
+    public static ArrayList<Vehicle> loadVehiclesFromFile(File file) {
+        Snapshot snapshot = new Snapshot(file);
+        readSnapshot(snapshot);
+        if (!snapshot.intact) {
+            System.err.println("Error loading vehicles from file: " + file.getName() + " is damaged (record count or checksum mismatch)");
+        }
+        return snapshot.vehicles;
+    }
+    
+    /**
+     * Read the records of a data file and check them against its trailer
+     * Files written before snapshots had trailers cannot be checked and count as intact
+     * @param snapshot Snapshot to fill in, with its file set
+     */
+    private static void readSnapshot(Snapshot snapshot) {
+        File file = snapshot.file;
         
-        // If file doesn't exist, return empty list
+        // If file doesn't exist, there are no records
         if (!file.exists()) {
-            return vehicles;
+            return;
+        }
+        
+        DataFileLoadEvent event = new DataFileLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        
+        if (isMappedRecordFile(file)) {
+            MappedRecordFile mapped = MappedRecordFile.open(file);
+            if (mapped != null) {
+                snapshot.vehicles = mapped.toVehicles();
+            } else {
+                snapshot.intact = false;
+            }
+        } else if (isBinaryFile(file)) {
+            readBinary(snapshot);
+        } else {
+            readText(snapshot);
+        }
+        
+        event.end();
+        long bytes = file.length();
+        Metrics.BYTES_READ.add(bytes);
+        Metrics.RECORDS_READ.add(snapshot.vehicles.size());
+        if (event.shouldCommit()) {
+            event.path = file.getPath();
+            event.records = snapshot.vehicles.size();
+            event.bytes = bytes;
+            event.chunks = snapshot.chunks;
+            event.bytesPerSecond = (long) (bytes * 1e9 / Math.max(1L, System.nanoTime() - start));
+            event.commit();
+        }
+    }
+    
+    /**
+     * Read vehicle records in the text format
+     * The file is read in windows that are parsed in parallel as they arrive (see ParallelTextLoader);
+     * its header and trailer lines are checked here
+     * @param snapshot Snapshot to fill in
+     */
+    private static void readText(Snapshot snapshot) {
+        File file = snapshot.file;
+        ParallelTextLoader loader;
+        try (ReadableByteChannel channel = openChannel(file)) {
+            loader = ParallelTextLoader.parse(channel);
+        } catch (IOException e) {
+            System.err.println("Error loading vehicles from file: " + e.getMessage());
+            snapshot.intact = false;
+            return;
+        } catch (ExecutionException e) {
+            System.err.println("Error loading vehicles from file: " + e.getCause());
+            snapshot.intact = false;
+            return;
+        }
+        snapshot.vehicles = loader.getVehicles();
+        snapshot.chunks = loader.getChunks();
+        
+        boolean checked = false;
+        long trailerLines = -1L;
+        int trailerChecksum = 0;
+        try {
+            // Header: the first line
+            String first = loader.getFirstLine();
+            String[] parts = first.split("\\|", -1);
+            if (first.startsWith(SNAPSHOT_HEADER) && parts.length == 3) {
+                checked = true;
+                snapshot.snapshotId = Long.parseLong(parts[1]);
+                snapshot.archiveGeneration = Integer.parseInt(parts[2]);
+            } else if (first.startsWith(ARCHIVE_HEADER) && parts.length == 2) {
+                snapshot.archiveGeneration = Integer.parseInt(parts[1]);
+            }
+            
+            // Trailer: the last non-blank line
+            String last = loader.getLastLine();
+            parts = last.split("\\|", -1);
+            if (last.startsWith(SNAPSHOT_TRAILER) && parts.length == 3) {
+                trailerLines = Long.parseLong(parts[1]);
+                trailerChecksum = (int) Long.parseLong(parts[2], 16);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Error loading vehicles from file: " + file.getName() + " has a malformed header or trailer");
+            snapshot.intact = false;
+        }
+        
+        if (checked) {
+            snapshot.intact &= trailerLines == loader.getLines() && trailerChecksum == loader.getChecksum();
+        }
+    }
+    
+    /**
+     * Read vehicle records in the binary format
+     * Corrupt records (bad checksum) are skipped; reading stops at a truncated record
+     * @param snapshot Snapshot to fill in
+     */
+    private static void readBinary(Snapshot snapshot) {
+        File file = snapshot.file;
+        ByteBuffer buffer;
+        try {
+            buffer = readBuffer(file);
+        } catch (IOException e) {
+            System.err.println("Error loading vehicles from file: " + e.getMessage());
+            snapshot.intact = false;
+            return;
+        }
+        boolean checked = VehicleRecordCodec.hasTrailer(buffer);
+        snapshot.snapshotId = VehicleRecordCodec.readSnapshotId(buffer);
+        snapshot.archiveGeneration = VehicleRecordCodec.readHeader(buffer);
+        if (snapshot.archiveGeneration < 0) {
+            System.err.println("Error loading vehicles from file: " + file.getName() + " is not a supported binary data file");
+            snapshot.archiveGeneration = 0;
+            snapshot.intact = false;
+            return;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        VehicleRecordCodec codec = new VehicleRecordCodec();
+        int recordsFrom = buffer.position();
+        int records = 0;
+        boolean ended = false;
+        try {
+            while (buffer.hasRemaining()) {
+                if (checked && VehicleRecordCodec.isTrailer(buffer)) {
+                    CRC32C crc = new CRC32C();
+                    crc.update(buffer.duplicate().limit(buffer.position()).position(recordsFrom));
+                    buffer.getShort();
+                    ended = buffer.getInt() == records && buffer.getInt() == (int) crc.getValue() && !buffer.hasRemaining();
+                    break;
+                }
+                int offset = buffer.position();
+                Vehicle vehicle = codec.decode(buffer);
+                records++;
+                if (vehicle != null) {
+                    snapshot.vehicles.add(vehicle);
+                } else {
+                    System.err.println("Error parsing vehicle data at offset " + offset + " of " + file.getName());
+                    // Skip invalid record
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            System.err.println("Error loading vehicles from file: " + file.getName() + " ends inside a record");
+        }
+        snapshot.intact = !checked || ended;
+    }
+    
+    /**
+     * Read the snapshot id from the header of a data file
+     * @return Snapshot id, 0 if the file has none or cannot be read
+     */
+    private static long readSnapshotId(File file) {
+        try (InputStream in = openInput(file)) {
+            if (isBinaryFile(file)) {
+                return VehicleRecordCodec.readSnapshotId(ByteBuffer.wrap(in.readNBytes(VehicleRecordCodec.HEADER_BYTES)));
+            }
+            if (!isMappedRecordFile(file)) {
+                String line = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).readLine();
+                if (line != null && line.startsWith(SNAPSHOT_HEADER)) {
+                    return Long.parseLong(line.split("\\|", -1)[1].trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading data file header: " + e.getMessage());
+        }
+        return 0L;
+    }
+    
+    /**
+     * Get the whole content of a binary file as a heap buffer, decompressed if its name ends in .gz
+     * Not memory-mapped: on Windows a mapped file cannot be replaced until the mapping is
+     * garbage collected, and data files are replaced at every save (only the immutable
+     * .dat history partitions are mapped, by MappedRecordFile)
+     * @throws IOException if reading fails or the content does not fit in one buffer
+     */
+    private static ByteBuffer readBuffer(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            try (InputStream in = openInput(file)) {
+                byte[] bytes = in.readNBytes(MAX_BUFFER_BYTES);
+                if (in.read() >= 0) {
+                    throw new IOException(file.getName() + " is too large to load (over " + MAX_BUFFER_BYTES + " bytes uncompressed)");
+                }
+                return ByteBuffer.wrap(bytes);
+            }
+        }
+        if (file.length() > MAX_BUFFER_BYTES) {
+            throw new IOException(file.getName() + " is too large to load (over " + MAX_BUFFER_BYTES + " bytes)");
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    }
+    
+    /**
+     * Open a file for reading as a channel, decompressing it if its name ends in .gz
+     * @param file File to read
+     * @return Channel positioned at the start of the (decompressed) content
+     */
+    private static ReadableByteChannel openChannel(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            return Channels.newChannel(openInput(file));
+        }
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+    
+    /**
+     * Formats a single mutation record as a journal line
+     * Format: A|record, U|oldVehicleNumber|record, D|vehicleNumber (its latest record)
+     * or D|vehicleNumber|entryTime (the record with that entry time)
+     * @param operation JOURNAL_ADD, JOURNAL_UPDATE or JOURNAL_DELETE
+     * @param vehicleNumber Vehicle number the operation applies to
+     * @param vehicle Vehicle record (for deletes: the record deleted, or null for the latest one)
+     * @return Journal line (without line terminator), or null for an unknown operation
+     */
+    public static String formatJournalEntry(char operation, String vehicleNumber, Vehicle vehicle) {
+        switch (operation) {
+            case JOURNAL_ADD:
+                return JOURNAL_ADD + "|" + formatVehicleRecord(vehicle);
+            case JOURNAL_UPDATE:
+                return JOURNAL_UPDATE + "|" + vehicleNumber + "|" + formatVehicleRecord(vehicle);
+            case JOURNAL_DELETE:
+                if (vehicle != null) {
+                    return JOURNAL_DELETE + "|" + vehicleNumber + "|" + DateTimeUtil.format(vehicle.getEntryTimeMillis());
+                }
+                return JOURNAL_DELETE + "|" + vehicleNumber;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Opens a write-behind writer for the journal file
+     * @return Journal writer with the durability settings from system properties
+     */
+    public static JournalWriter openJournalWriter() {
+        return new JournalWriter(JOURNAL_FILE);
+    }
+    
+    /**
+     * Get the first line of a new journal: the id of the snapshot its entries follow
+     * @return Journal header line (without line terminator)
+     */
+    public static String journalHeader() {
+        return SNAPSHOT_HEADER + snapshotId;
+    }
+    
+    /**
+     * Read the entries of a journal file
+     * @param file Journal file
+     * @return Journal entries in the order they were written, with the snapshot id from the header (-1 if none)
+     */
+    private static JournalFile readJournal(File file) {
+        JournalFile journal = new JournalFile();
+        if (!file.exists()) {
+            return journal;
+        }
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
@@ -66,35 +730,251 @@ public class FileHandler {
                     continue;
                 }
                 
-                String[] parts = line.split("\\|");
-                // Support both old format (5 parts) and new format (6 parts with exitTime)
-                if (parts.length == 5 || parts.length == 6) {
+                String[] parts = line.split("\\|", -1);
+                if (line.startsWith(SNAPSHOT_HEADER) && parts.length == 2) {
                     try {
-                        String vehicleNumber = parts[0];
-                        String vehicleType = parts[1];
-                        int slotNumber = Integer.parseInt(parts[2]);
-                        String entryTime = parts[3];
-                        String exitTime = (parts.length == 6 && !parts[4].isEmpty()) ? parts[4] : null;
-                        String status = parts.length == 6 ? parts[5] : parts[4];
-                        
-                        Vehicle vehicle;
-                        if (exitTime != null) {
-                            vehicle = new Vehicle(vehicleNumber, vehicleType, slotNumber, entryTime, exitTime, status);
-                        } else {
-                            vehicle = new Vehicle(vehicleNumber, vehicleType, slotNumber, entryTime, status);
-                        }
-                        vehicles.add(vehicle);
+                        journal.snapshotId = Long.parseLong(parts[1]);
+                        continue;
                     } catch (NumberFormatException e) {
-                        System.err.println("Error parsing vehicle data: " + line);
-                        // Skip invalid line
+                        // Reported below
+                    }
+                }
+                JournalEntry entry = null;
+                if (parts[0].length() == 1 && parts.length >= 2) {
+                    char operation = parts[0].charAt(0);
+                    if (operation == JOURNAL_ADD) {
+                        Vehicle vehicle = parseVehicleRecord(parts, 1);
+                        if (vehicle != null) {
+                            entry = new JournalEntry(operation, vehicle.getVehicleNumber(), vehicle);
+                        }
+                    } else if (operation == JOURNAL_UPDATE) {
+                        Vehicle vehicle = parseVehicleRecord(parts, 2);
+                        if (vehicle != null) {
+                            entry = new JournalEntry(operation, parts[1], vehicle);
+                        }
+                    } else if (operation == JOURNAL_DELETE && parts.length == 2) {
+                        entry = new JournalEntry(operation, parts[1], null);
+                    } else if (operation == JOURNAL_DELETE) {
+                        long entryTime = DateTimeUtil.parse(parts[2]);
+                        if (entryTime != DateTimeUtil.NO_TIME) {
+                            entry = new JournalEntry(operation, parts[1], entryTime);
+                        }
                     }
                 }
+                
+                if (entry != null) {
+                    journal.entries.add(entry);
+                } else {
+                    // A torn last line after a crash ends up here
+                    System.err.println("Error parsing journal entry: " + line);
+                }
             }
         } catch (IOException e) {
-            System.err.println("Error loading vehicles from file: " + e.getMessage());
+            System.err.println("Error loading journal: " + e.getMessage());
         }
         
-        return vehicles;
+        return journal;
+    }
+    
+    /**
+     * Starts a new journal once its entries are folded into a snapshot
+     * The old journal is kept as the previous one, for recovering from the previous snapshot
+     * @return true if the journal no longer exists, false otherwise
+     */
+    public static boolean rotateJournal() {
+        try {
+            if (JOURNAL_FILE.exists()) {
+                moveReplacing(JOURNAL_FILE, PREVIOUS_JOURNAL_FILE);
+            } else {
+                Files.deleteIfExists(PREVIOUS_JOURNAL_FILE.toPath()); // Nothing was changed since the previous snapshot
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error rotating journal: " + e.getMessage());
+            return !JOURNAL_FILE.exists() || JOURNAL_FILE.delete();
+        }
+    }
+    
+    /**
+     * Writes a history partition and its summary
+     * A file ending in .gz is compressed. An existing partition with the same name
+     * (from an interrupted compaction) is replaced
+     * @param fileName Partition file name inside the history directory
+     * @param vehicles Archived records
+     * @param summary Summary lines (plates, earnings)
+     * @return true if both files were written, false otherwise
+     */
+    public static boolean saveHistoryPartition(String fileName, List<Vehicle> vehicles, List<String> summary) {
+        if (!HISTORY_DIR.isDirectory() && !HISTORY_DIR.mkdirs()) {
+            System.err.println("Error creating history directory: " + HISTORY_DIR.getPath());
+            return false;
+        }
+        if (!writeVehicles(new File(HISTORY_DIR, fileName), vehicles, 0, 0L, null)) {
+            return false;
+        }
+        return writeLines(summaryFile(fileName), summary);
+    }
+    
+    /**
+     * Loads the records of a history partition
+     * @param fileName Partition file name from the manifest
+     * @return Archived records, empty list if the partition is missing
+     */
+    public static ArrayList<Vehicle> loadHistoryPartition(String fileName) {
+        return loadVehiclesFromFile(new File(HISTORY_DIR, fileName));
+    }
+    
+    /**
+     * Loads the summary of a history partition
+     * @param fileName Partition file name from the manifest
+     * @return Summary lines, or null if the summary cannot be read
+     */
+    public static ArrayList<String> loadHistorySummary(String fileName) {
+        return readLines(summaryFile(fileName));
+    }
+    
+    /**
+     * Replaces the history manifest
+     * @param lines Manifest lines, one per partition
+     * @return true if saved successfully, false otherwise
+     */
+    public static boolean saveHistoryManifest(List<String> lines) {
+        if (!HISTORY_DIR.isDirectory() && !HISTORY_DIR.mkdirs()) {
+            System.err.println("Error creating history directory: " + HISTORY_DIR.getPath());
+            return false;
+        }
+        return writeLines(MANIFEST_FILE, lines);
+    }
+    
+    /**
+     * Loads the history manifest
+     * @return Manifest lines, empty list if there is no history, or null if it cannot be read
+     */
+    public static ArrayList<String> loadHistoryManifest() {
+        if (!MANIFEST_FILE.exists()) {
+            return new ArrayList<>();
+        }
+        return readLines(MANIFEST_FILE);
+    }
+    
+    /**
+     * Get the summary file of a history partition: its name up to the first dot, plus .sum
+     */
+    private static File summaryFile(String fileName) {
+        int dot = fileName.indexOf('.');
+        return new File(HISTORY_DIR, (dot < 0 ? fileName : fileName.substring(0, dot)) + ".sum");
+    }
+    
+    /**
+     * Write text lines to a temporary file and rename it over the file
+     * @return true if saved successfully, false otherwise (the file is unchanged)
+     */
+    private static boolean writeLines(File file, List<String> lines) {
+        File temp = siblingFile(file, "tmp");
+        boolean written;
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(temp, StandardCharsets.UTF_8)))) {
+            for (String line : lines) {
+                writer.println(line);
+            }
+            written = !writer.checkError();
+        } catch (IOException e) {
+            System.err.println("Error saving " + file.getName() + ": " + e.getMessage());
+            written = false;
+        }
+        if (!written) {
+            temp.delete();
+            return false;
+        }
+        return replaceFile(temp, file, null);
+    }
+    
+    /**
+     * Read the non-blank lines of a text file
+     * @return Trimmed lines, or null if the file cannot be read
+     */
+    private static ArrayList<String> readLines(File file) {
+        ArrayList<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            System.err.println("Error loading " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Open a file for writing, compressing it if its name ends in .gz
+     */
+    private static OutputStream openOutput(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            return new GZIPOutputStream(new FileOutputStream(file));
+        }
+        return new FileOutputStream(file);
+    }
+    
+    /**
+     * Open a file for reading, decompressing it if its name ends in .gz
+     */
+    private static InputStream openInput(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            return new GZIPInputStream(new FileInputStream(file));
+        }
+        return new FileInputStream(file);
+    }
+    
+    /**
+     * Check if a file holds binary records, judging by its name (.bin or .bin.gz)
+     * @param file File to check
+     * @return true for the binary format, false for text
+     */
+    public static boolean isBinaryFile(File file) {
+        String name = file.getName();
+        return name.endsWith(".bin") || name.endsWith(".bin.gz");
+    }
+    
+    /**
+     * Check if a file holds fixed-size record slots, judging by its name (.dat)
+     * These files have no archive header and cannot be compressed
+     * @param file File to check
+     * @return true for the fixed-size slot format
+     */
+    public static boolean isMappedRecordFile(File file) {
+        return file.getName().endsWith(".dat");
+    }
+    
+    /**
+     * Map a file of fixed-size record slots in the history directory
+     * @param fileName Partition file name from the manifest
+     * @return Mapped records, or null if the file cannot be read
+     */
+    public static MappedRecordFile mapHistoryPartition(String fileName) {
+        return MappedRecordFile.open(new File(HISTORY_DIR, fileName));
+    }
+    
+    /**
+     * Get the extension of new record files in the configured format
+     * @return ".bin" or ".txt"
+     */
+    public static String getRecordFileExtension() {
+        return RECORD_FILE_EXTENSION;
+    }
+    
+    /**
+     * Get the data file to load: the one in the configured format, unless the file
+     * in the other format is newer (it was saved before the format was switched)
+     */
+    private static File currentDataFile() {
+        if (OTHER_FORMAT_DATA_FILE.exists()
+                && (!DATA_FILE.exists() || OTHER_FORMAT_DATA_FILE.lastModified() > DATA_FILE.lastModified())) {
+            return OTHER_FORMAT_DATA_FILE;
+        }
+        return DATA_FILE;
     }
     
     /**
@@ -102,7 +982,7 @@ public class FileHandler {
      * @return true if file exists, false otherwise
      */
     public static boolean dataFileExists() {
-        return new File(DATA_FILE).exists();
+        return currentDataFile().exists();
     }
     
     /**
@@ -110,7 +990,107 @@ public class FileHandler {
      * @return String path to the data file
      */
     public static String getDataFilePath() {
-        return new File(DATA_FILE).getAbsolutePath();
+        return DATA_FILE.getAbsolutePath();
+    }
+    
+    /**
+     * Inner class to represent the snapshot loaded at startup
+     */
+    public static class Snapshot {
+        private final File file;
+        private ArrayList<Vehicle> vehicles = new ArrayList<>();
+        private long snapshotId;
+        private int archiveGeneration;
+        private boolean intact = true;
+        private boolean recovered;
+        private int chunks = 1; // Parallel parse chunks, for the load event
+        private final ArrayList<JournalEntry> journal = new ArrayList<>();
+        
+        private Snapshot(File file) {
+            this.file = file;
+        }
+        
+        public ArrayList<Vehicle> getVehicles() {
+            return vehicles;
+        }
+        
+        /**
+         * Get the history manifest generation the snapshot relies on
+         * @return Manifest generation, 0 if it has none
+         */
+        public int getArchiveGeneration() {
+            return archiveGeneration;
+        }
+        
+        /**
+         * Get the journal entries to replay on top of the snapshot
+         * @return Journal entries in the order they were written
+         */
+        public ArrayList<JournalEntry> getJournal() {
+            return journal;
+        }
+        
+        /**
+         * Check if a damaged snapshot was skipped, so the loaded state should be saved again
+         * @return true if an older snapshot was used
+         */
+        public boolean isRecovered() {
+            return recovered;
+        }
+    }
+    
+    /**
+     * Journal entries read from one journal file
+     */
+    private static class JournalFile {
+        private long snapshotId = -1L; // -1 for a journal without a header
+        private final ArrayList<JournalEntry> entries = new ArrayList<>();
+    }
+    
+    /**
+     * Inner class to represent a single journal entry
+     */
+    public static class JournalEntry {
+        private char operation;
+        private String vehicleNumber;
+        private Vehicle vehicle;
+        private long entryTimeMillis = DateTimeUtil.NO_TIME;
+        
+        public JournalEntry(char operation, String vehicleNumber, Vehicle vehicle) {
+            this.operation = operation;
+            this.vehicleNumber = vehicleNumber;
+            this.vehicle = vehicle;
+        }
+        
+        /**
+         * Create a delete entry for one particular record
+         * @param operation JOURNAL_DELETE
+         * @param vehicleNumber Vehicle number of the record
+         * @param entryTimeMillis Entry time of the record (to the second, as stored in data files)
+         */
+        public JournalEntry(char operation, String vehicleNumber, long entryTimeMillis) {
+            this(operation, vehicleNumber, null);
+            this.entryTimeMillis = entryTimeMillis;
+        }
+        
+        public char getOperation() {
+            return operation;
+        }
+        
+        public String getVehicleNumber() {
+            return vehicleNumber;
+        }
+        
+        public Vehicle getVehicle() {
+            return vehicle;
+        }
+        
+        /**
+         * Get the entry time of the record a delete applies to
+         * @return Entry time, or NO_TIME if the delete applies to the latest record
+         */
+        public long getEntryTimeMillis() {
+            return entryTimeMillis;
+        }
     }
 }
-
@@ -0,0 +1,398 @@
+package pms.util;
+
+import pms.metrics.Metrics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind journal: entries are queued by the mutating thread and written by a
+ * persistence thread, which writes everything queued (plus whatever arrives within
+ * the coalescing window) in one write followed by at most one fsync
+ * Durability (-Dpms.durability):
+ *   event    - every mutation waits until its entry is on disk (group commit)
+ *   interval - fsync at most every -Dpms.durability.interval.ms (default 100); callers don't wait
+ *   shutdown - fsync only on flush/close; callers don't wait
+ * The queue is bounded (-Dpms.journal.queue, default 4096), so a stalled disk
+ * eventually blocks writers instead of growing the heap
+ * @author uSer
+ */
+public class JournalWriter {
+    public static final String DURABILITY_EVENT = "event";
+    public static final String DURABILITY_INTERVAL = "interval";
+    public static final String DURABILITY_SHUTDOWN = "shutdown";
+    
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_POLL_MILLIS = 50;
+    
+    private final File file;
+    private final String durability;
+    private final long syncIntervalNanos;
+    private final long windowNanos;
+    private final ArrayBlockingQueue<String> queue;
+    private final Thread thread;
+    
+    private final Object appendLock = new Object(); // Keeps sequence numbers in queue order
+    private final Object fileLock = new Object(); // Guards channel
+    private FileChannel channel; // Opened on first write
+    
+    // Sequence numbers of entries, guarded by this
+    private long enqueued;
+    private long written;
+    private long synced;
+    private long lastSyncNanos;
+    private long failedUpTo; // Entries up to here may not be on disk after a write error
+    private boolean errorPending; // Write error not yet reported by checkError
+    private volatile boolean running = true;
+    
+    /**
+     * Create a journal writer with the durability settings from system properties
+     * @param file Journal file to append to
+     */
+    public JournalWriter(File file) {
+        this(file, System.getProperty("pms.durability", DURABILITY_INTERVAL),
+                Long.getLong("pms.durability.interval.ms", 100L),
+                Long.getLong("pms.journal.window.ms", 0L),
+                Integer.getInteger("pms.journal.queue", 4096));
+    }
+    
+    /**
+     * Create a journal writer
+     * @param file Journal file to append to
+     * @param durability DURABILITY_EVENT, DURABILITY_INTERVAL or DURABILITY_SHUTDOWN
+     * @param syncIntervalMillis Longest time between fsyncs in interval mode
+     * @param windowMillis Time to wait for more entries before writing a batch, 0 to write at once
+     * @param capacity Queue capacity
+     */
+    public JournalWriter(File file, String durability, long syncIntervalMillis, long windowMillis, int capacity) {
+        this.file = file;
+        if (!DURABILITY_EVENT.equals(durability) && !DURABILITY_SHUTDOWN.equals(durability)) {
+            if (!DURABILITY_INTERVAL.equals(durability)) {
+                System.err.println("Unknown durability mode " + durability + ", using " + DURABILITY_INTERVAL);
+            }
+            durability = DURABILITY_INTERVAL;
+        }
+        this.durability = durability;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, syncIntervalMillis));
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, windowMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.lastSyncNanos = System.nanoTime();
+        
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "pms-journal");
+        thread.setDaemon(true); // The shutdown hook and close() flush; the thread must not keep the JVM alive
+        thread.start();
+    }
+    
+    /**
+     * Queue a journal line, blocking while the queue is full
+     * @param line Journal line (without line terminator)
+     * @return Sequence number of the entry, for awaitDurable, or -1 if the writer is closed
+     */
+    public long append(String line) {
+        synchronized (appendLock) {
+            if (!running) {
+                return -1L;
+            }
+            long sequence;
+            synchronized (this) {
+                sequence = ++enqueued;
+            }
+            try {
+                queue.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                synchronized (this) {
+                    enqueued--; // Never queued
+                }
+                return -1L;
+            }
+            return sequence;
+        }
+    }
+    
+    /**
+     * Wait until an entry is durable, if the durability mode asks for it
+     * Must not be called while holding locks a compaction needs
+     * @param sequence Sequence number returned by append
+     * @return true if the entry is written (and synced in event mode), false after a write error
+     */
+    public boolean awaitDurable(long sequence) {
+        if (!DURABILITY_EVENT.equals(durability) || sequence < 0) {
+            return true;
+        }
+        synchronized (this) {
+            boolean interrupted = false;
+            while (synced < sequence && failedUpTo < sequence && thread.isAlive()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return synced >= sequence;
+        }
+    }
+    
+    /**
+     * Wait until every queued entry is written, then fsync
+     * @return true if everything is on disk, false after a write error
+     */
+    public boolean flush() {
+        long target;
+        synchronized (this) {
+            target = enqueued;
+            boolean interrupted = false;
+            while (written < target && thread.isAlive()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (written < target || failedUpTo >= target) {
+                return false;
+            }
+        }
+        
+        boolean ok = sync();
+        synchronized (this) {
+            if (ok && synced < target) {
+                synced = target;
+            } else if (!ok) {
+                recordFailure();
+            }
+            notifyAll();
+        }
+        return ok;
+    }
+    
+    /**
+     * Start a new journal once the entries are part of a snapshot
+     * The caller must have flushed and must keep new entries from being appended meanwhile
+     * @return true if the old journal is out of the way, false otherwise
+     */
+    public boolean rotate() {
+        synchronized (fileLock) {
+            closeChannel();
+            return FileHandler.rotateJournal();
+        }
+    }
+    
+    /**
+     * Check for and clear a write error, so the caller can fall back to a full snapshot
+     * @return true if a write failed since the last call
+     */
+    public synchronized boolean checkError() {
+        boolean result = errorPending;
+        errorPending = false;
+        return result;
+    }
+    
+    /**
+     * Note that the entries written so far may not be on disk (called holding this)
+     */
+    private void recordFailure() {
+        failedUpTo = written;
+        errorPending = true;
+    }
+    
+    /**
+     * Get the sequence number of the last queued entry
+     * @return Sequence number (0 if nothing was queued)
+     */
+    public synchronized long getLastSequence() {
+        return enqueued;
+    }
+    
+    public String getDurability() {
+        return durability;
+    }
+    
+    /**
+     * Stop accepting entries, write and fsync everything queued and stop the thread
+     * @return true if everything queued is on disk, false otherwise
+     */
+    public boolean close() {
+        synchronized (appendLock) {
+            running = false;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean ok = flush();
+        synchronized (fileLock) {
+            closeChannel();
+        }
+        return ok;
+    }
+    
+    /**
+     * Persistence thread: take a batch, write it, fsync as the durability mode requires
+     */
+    private void writeLoop() {
+        ArrayList<String> batch = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        while (running || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    syncIfDue();
+                    continue;
+                }
+                batch.add(first);
+                if (windowNanos > 0) {
+                    long deadline = System.nanoTime() + windowNanos;
+                    long remaining;
+                    while (batch.size() < MAX_BATCH && (remaining = deadline - System.nanoTime()) > 0) {
+                        String next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch, MAX_BATCH - batch.size());
+            } catch (InterruptedException e) {
+                continue; // Only stops when closed and drained
+            }
+            
+            text.setLength(0);
+            for (String line : batch) {
+                text.append(line).append(System.lineSeparator());
+            }
+            boolean ok = write(text);
+            synchronized (this) {
+                written += batch.size();
+                if (!ok) {
+                    recordFailure();
+                }
+                notifyAll();
+            }
+            if (ok) {
+                Metrics.JOURNAL_APPENDS.add(batch.size());
+                Metrics.JOURNAL_BATCHES.increment();
+            }
+            batch.clear();
+            
+            if (!ok) {
+                continue; // Nothing new to sync; the failure is already recorded
+            }
+            if (DURABILITY_EVENT.equals(durability)) {
+                markSynced(sync());
+            } else {
+                syncIfDue();
+            }
+        }
+    }
+    
+    /**
+     * In interval mode, fsync if entries were written since the last fsync and the interval has passed
+     */
+    private void syncIfDue() {
+        boolean due;
+        synchronized (this) {
+            due = DURABILITY_INTERVAL.equals(durability) && written > synced
+                    && System.nanoTime() - lastSyncNanos >= syncIntervalNanos;
+        }
+        if (due) {
+            markSynced(sync());
+        }
+    }
+    
+    private void markSynced(boolean ok) {
+        synchronized (this) {
+            if (ok) {
+                synced = written;
+                lastSyncNanos = System.nanoTime();
+            } else {
+                recordFailure();
+            }
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Append text to the journal file
+     * @return true if written, false otherwise
+     */
+    private boolean write(CharSequence text) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        synchronized (fileLock) {
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    if (channel.size() == 0) {
+                        // A new journal names the snapshot its entries follow
+                        ByteBuffer header = StandardCharsets.UTF_8.encode(FileHandler.journalHeader() + System.lineSeparator());
+                        while (header.hasRemaining()) {
+                            channel.write(header);
+                        }
+                    }
+                }
+                int length = bytes.remaining();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                Metrics.BYTES_WRITTEN.add(length);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Error appending to journal: " + e.getMessage());
+                closeChannel();
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * Force written entries to disk
+     * @return true if synced (or nothing is open), false otherwise
+     */
+    private boolean sync() {
+        synchronized (fileLock) {
+            if (channel == null) {
+                return true;
+            }
+            long start = System.nanoTime();
+            try {
+                channel.force(false);
+                Metrics.JOURNAL_SYNC_LATENCY.recordSince(start);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Error syncing journal: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+    
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package pms.util;
+
+import pms.model.Vehicle;
+import pms.model.VehicleRecord;
+import pms.model.VehicleStatus;
+import pms.model.VehicleType;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Vehicle records in fixed-size slots, read through a memory mapping
+ * Records are read in place through a flyweight view, so scanning a file creates no
+ * objects per record and the records stay off the Java heap
+ * File layout: header (magic "PMSF", version, slot size, record count, reserved),
+ * then one 64-byte slot per record: u8 plate length, plate (ASCII, up to 15 bytes),
+ * type, status and payment codes (see VehicleRecordCodec), i32 slot number,
+ * i64 entry, exit, fee cents and paid-at times, 8 reserved bytes
+ * Only records that fit() can be stored; files are written once and never changed
+ * @author uSer
+ */
+public class MappedRecordFile {
+    public static final int MAGIC = 0x504D5346; // "PMSF"
+    public static final short VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int SLOT_BYTES = 64;
+    
+    private static final int MAX_PLATE_BYTES = 15;
+    private static final int TYPE_OFFSET = 16;
+    private static final int STATUS_OFFSET = 17;
+    private static final int PAYMENT_OFFSET = 18;
+    private static final int SLOT_NUMBER_OFFSET = 20;
+    private static final int ENTRY_OFFSET = 24;
+    private static final int EXIT_OFFSET = 32;
+    private static final int FEE_OFFSET = 40;
+    private static final int PAID_AT_OFFSET = 48;
+    
+    // Slots per mapping; a single mapping is limited to 2 GB
+    private static final int SLOTS_PER_CHUNK = 1 << 24;
+    private static final int WRITE_BUFFER_SLOTS = 1024;
+    
+    private final MappedByteBuffer[] chunks;
+    private final int count;
+    
+    // Constructor
+    private MappedRecordFile(MappedByteBuffer[] chunks, int count) {
+        this.chunks = chunks;
+        this.count = count;
+    }
+    
+    /**
+     * Check if a record can be stored in a fixed-size slot
+     * @param v Vehicle record
+     * @return true if its plate is short ASCII without surrounding spaces and its
+     *         type, status and payment method have codes
+     */
+    public static boolean fits(Vehicle v) {
+        String plate = v.getVehicleNumber();
+        if (plate == null || plate.isEmpty() || plate.length() > MAX_PLATE_BYTES || !plate.equals(plate.trim())) {
+            return false;
+        }
+        for (int i = 0; i < plate.length(); i++) {
+            if (plate.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        String paymentMethod = v.getPaymentMethod() != null ? v.getPaymentMethod() : "";
+        return VehicleRecordCodec.codeOf(VehicleRecordCodec.TYPES, v.getVehicleType()) >= 0
+                && VehicleRecordCodec.codeOf(VehicleRecordCodec.STATUSES, v.getStatus()) >= 0
+                && VehicleRecordCodec.codeOf(VehicleRecordCodec.PAYMENT_METHODS, paymentMethod) >= 0;
+    }
+    
+    /**
+     * Write records to a new file, replacing it
+     * The record count is written last, so a partly written file reads as fewer records
+     * @param file File to write
+     * @param vehicles Records to write; all must fit()
+     * @return Number of records written, or -1 on error
+     */
+    public static int write(File file, List<Vehicle> vehicles) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) SLOT_BYTES).putInt(0).putInt(0);
+            header.flip();
+            writeFully(channel, header, 0L);
+            
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SLOTS * SLOT_BYTES);
+            long position = HEADER_BYTES;
+            int records = 0;
+            for (Vehicle v : vehicles) {
+                if (v == null) {
+                    continue;
+                }
+                if (!fits(v)) {
+                    System.err.println("Error saving vehicles to file: " + v.getVehicleNumber() + " does not fit a fixed-size slot");
+                    return -1;
+                }
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    position += writeFully(channel, buffer, position);
+                    buffer.clear();
+                }
+                encodeSlot(v, buffer);
+                records++;
+            }
+            buffer.flip();
+            writeFully(channel, buffer, position);
+            
+            header.clear();
+            header.putInt(records).flip();
+            writeFully(channel, header, 8L);
+            return records;
+        } catch (IOException e) {
+            System.err.println("Error saving vehicles to file: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+    
+    private static void encodeSlot(Vehicle v, ByteBuffer buffer) {
+        int base = buffer.position();
+        String plate = v.getVehicleNumber();
+        buffer.put(base, (byte) plate.length());
+        for (int i = 0; i < plate.length(); i++) {
+            buffer.put(base + 1 + i, (byte) plate.charAt(i));
+        }
+        String paymentMethod = v.getPaymentMethod() != null ? v.getPaymentMethod() : "";
+        buffer.put(base + TYPE_OFFSET, (byte) VehicleRecordCodec.codeOf(VehicleRecordCodec.TYPES, v.getVehicleType()));
+        buffer.put(base + STATUS_OFFSET, (byte) VehicleRecordCodec.codeOf(VehicleRecordCodec.STATUSES, v.getStatus()));
+        buffer.put(base + PAYMENT_OFFSET, (byte) VehicleRecordCodec.codeOf(VehicleRecordCodec.PAYMENT_METHODS, paymentMethod));
+        buffer.putInt(base + SLOT_NUMBER_OFFSET, v.getSlotNumber());
+        buffer.putLong(base + ENTRY_OFFSET, v.getEntryTimeMillis());
+        buffer.putLong(base + EXIT_OFFSET, v.getExitTimeMillis());
+        buffer.putLong(base + FEE_OFFSET, v.getFeeCents());
+        buffer.putLong(base + PAID_AT_OFFSET, v.getPaidAtMillis());
+        buffer.position(base + SLOT_BYTES);
+    }
+    
+    /**
+     * Map a record file for reading
+     * @param file File written by write()
+     * @return Mapped file, or null if it cannot be read or is not a record file
+     */
+    public static MappedRecordFile open(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getShort() != VERSION
+                    || header.getShort() != SLOT_BYTES) {
+                System.err.println("Error loading vehicles from file: " + file.getName() + " is not a supported record file");
+                return null;
+            }
+            int count = header.getInt();
+            long available = (channel.size() - HEADER_BYTES) / SLOT_BYTES;
+            if (count < 0 || count > available) {
+                System.err.println("Error loading vehicles from file: " + file.getName() + " is truncated");
+                count = (int) Math.min(Math.max(count, 0), available);
+            }
+            
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(count + SLOTS_PER_CHUNK - 1) / SLOTS_PER_CHUNK];
+            for (int i = 0; i < chunks.length; i++) {
+                int slots = Math.min(SLOTS_PER_CHUNK, count - i * SLOTS_PER_CHUNK);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + (long) i * SLOTS_PER_CHUNK * SLOT_BYTES, (long) slots * SLOT_BYTES);
+            }
+            return new MappedRecordFile(chunks, count);
+        } catch (IOException e) {
+            System.err.println("Error loading vehicles from file: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Get the number of records
+     * @return Record count
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Pass every record to an action through one reused view
+     * @param action Action to run; must not keep the view (use toVehicle() to keep a record)
+     */
+    public void forEach(Consumer<? super VehicleRecord> action) {
+        View view = new View();
+        for (int i = 0; i < count; i++) {
+            view.moveTo(i);
+            action.accept(view);
+        }
+    }
+    
+    /**
+     * Copy every record to a Vehicle
+     * @return Records in file order
+     */
+    public ArrayList<Vehicle> toVehicles() {
+        ArrayList<Vehicle> vehicles = new ArrayList<>(count);
+        View view = new View();
+        for (int i = 0; i < count; i++) {
+            view.moveTo(i);
+            vehicles.add(view.toVehicle());
+        }
+        return vehicles;
+    }
+    
+    /**
+     * Flyweight over one slot of the mapping
+     */
+    public final class View implements VehicleRecord {
+        private ByteBuffer chunk;
+        private int base;
+        
+        void moveTo(int index) {
+            chunk = chunks[index / SLOTS_PER_CHUNK];
+            base = (index % SLOTS_PER_CHUNK) * SLOT_BYTES;
+        }
+        
+        @Override
+        public String getVehicleNumber() {
+            int length = chunk.get(base) & 0xFF;
+            byte[] plate = new byte[length];
+            chunk.get(base + 1, plate);
+            return new String(plate, StandardCharsets.ISO_8859_1);
+        }
+        
+        /**
+         * Check the plate against a normalized query without creating a string
+         * @param query Normalized (trimmed, upper-case) partial vehicle number
+         * @param prefixOnly true to match only plates starting with the query
+         * @return true if the normalized plate contains (or starts with) the query
+         */
+        public boolean plateMatches(String query, boolean prefixOnly) {
+            int length = chunk.get(base) & 0xFF;
+            int last = prefixOnly ? 0 : length - query.length();
+            for (int start = 0; start <= last && query.length() <= length; start++) {
+                int i = 0;
+                while (i < query.length()
+                        && Character.toUpperCase((char) (chunk.get(base + 1 + start + i) & 0xFF)) == query.charAt(i)) {
+                    i++;
+                }
+                if (i == query.length()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public VehicleType getVehicleType() {
+            return VehicleRecordCodec.TYPES[chunk.get(base + TYPE_OFFSET)];
+        }
+        
+        @Override
+        public int getSlotNumber() {
+            return chunk.getInt(base + SLOT_NUMBER_OFFSET);
+        }
+        
+        @Override
+        public long getEntryTimeMillis() {
+            return chunk.getLong(base + ENTRY_OFFSET);
+        }
+        
+        @Override
+        public long getExitTimeMillis() {
+            return chunk.getLong(base + EXIT_OFFSET);
+        }
+        
+        @Override
+        public VehicleStatus getStatus() {
+            return VehicleRecordCodec.STATUSES[chunk.get(base + STATUS_OFFSET)];
+        }
+        
+        @Override
+        public long getFeeCents() {
+            return chunk.getLong(base + FEE_OFFSET);
+        }
+        
+        @Override
+        public String getPaymentMethod() {
+            String paymentMethod = VehicleRecordCodec.PAYMENT_METHODS[chunk.get(base + PAYMENT_OFFSET)];
+            return paymentMethod.isEmpty() ? null : paymentMethod;
+        }
+        
+        @Override
+        public long getPaidAtMillis() {
+            return chunk.getLong(base + PAID_AT_OFFSET);
+        }
+        
+        @Override
+        public Vehicle toVehicle() {
+            Vehicle vehicle = new Vehicle(getVehicleNumber(), getVehicleType(), getSlotNumber(),
+                    getEntryTimeMillis(), getExitTimeMillis(), getStatus());
+            vehicle.setFeeCents(getFeeCents());
+            vehicle.setPaymentMethod(getPaymentMethod());
+            vehicle.setPaidAtMillis(getPaidAtMillis());
+            return vehicle;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package pms.util;
+
+import pms.model.Vehicle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Parses the record lines of a text data file in parallel, while the file is read
+ * The file is read in windows of a few megabytes that end at line boundaries; each window is
+ * parsed as one chunk on the common ForkJoinPool while the next is read, and the records of
+ * the chunks are joined in file order, so the result is the same as reading the file line by
+ * line. Only a few windows per thread are held at once, so files of any size load without
+ * one buffer for the whole file. Each chunk checksums its own lines; the chunk checksums are
+ * combined into the checksum of the whole file, as FileHandler computes it when writing
+ * A file that fits in one window (e.g. the active set) is parsed on the calling thread
+ * @author uSer
+ */
+public class ParallelTextLoader {
+    private static final int WINDOW_BYTES = 4 << 20;
+    private static final int WINDOWS_PER_THREAD = 2; // Windows read ahead of the parsing, per pool thread
+    private static final int MAX_WINDOW_BYTES = Integer.MAX_VALUE - 8; // Largest array the VM allocates
+    private static final int CRC32C_POLYNOMIAL = 0x82F63B78; // Reversed
+    
+    private final ArrayList<Vehicle> vehicles;
+    private final int lines;
+    private final int checksum;
+    private final int chunks;
+    private final String firstLine;
+    private final String lastLine;
+    
+    // Constructor
+    private ParallelTextLoader(ArrayList<Vehicle> vehicles, int lines, int checksum, int chunks, String firstLine, String lastLine) {
+        this.vehicles = vehicles;
+        this.lines = lines;
+        this.checksum = checksum;
+        this.chunks = chunks;
+        this.firstLine = firstLine;
+        this.lastLine = lastLine;
+    }
+    
+    /**
+     * Read a text data file and parse its record lines
+     * Blank lines and lines starting with # are skipped and not checksummed; the first line
+     * and the last non-blank line are kept for the header and trailer checks
+     * @param channel Channel positioned at the start of the file (read to its end, not closed)
+     * @return Parsed records with the record line count and checksum
+     * @throws IOException if reading fails or a line does not fit in a buffer
+     * @throws ExecutionException if parsing a chunk fails unexpectedly
+     */
+    public static ParallelTextLoader parse(ReadableByteChannel channel) throws IOException, ExecutionException {
+        int maxInFlight = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * WINDOWS_PER_THREAD);
+        ArrayList<Chunk> chunkList = new ArrayList<>();
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        String firstLine = "";
+        String lastLine = "";
+        
+        ByteBuffer window = ByteBuffer.allocate(WINDOW_BYTES);
+        boolean ended = false;
+        try {
+            while (!ended) {
+                while (window.hasRemaining() && !ended) {
+                    ended = channel.read(window) < 0;
+                }
+                int length = window.position();
+                int end = ended ? length : lineStartBefore(window, length);
+                if (end == 0 && !ended) {
+                    // No line ends in the window: read on into a larger one
+                    if (window.capacity() == MAX_WINDOW_BYTES) {
+                        throw new IOException("Line longer than " + MAX_WINDOW_BYTES + " bytes");
+                    }
+                    window = ByteBuffer.allocate((int) Math.min(2L * window.capacity(), MAX_WINDOW_BYTES)).put(window.flip());
+                    continue;
+                }
+                
+                if (end > 0) {
+                    if (chunkList.isEmpty()) {
+                        firstLine = lineAt(window, 0, lineStartAfter(window, 0, end));
+                    }
+                    String last = lastNonBlankLine(window, end);
+                    if (!last.isEmpty()) {
+                        lastLine = last;
+                    }
+                    Chunk chunk = new Chunk(window, 0, end);
+                    if (ended && chunkList.isEmpty()) {
+                        chunk.call(); // The whole file fits in one window
+                    } else {
+                        inFlight.add(ForkJoinPool.commonPool().submit(chunk));
+                    }
+                    chunkList.add(chunk);
+                    if (inFlight.size() >= maxInFlight) {
+                        inFlight.poll().get();
+                    }
+                }
+                
+                // Carry the partial last line over to the next window
+                int carry = length - end;
+                ByteBuffer next = ByteBuffer.allocate((int) Math.min(Math.max(WINDOW_BYTES, 2L * carry), MAX_WINDOW_BYTES));
+                window = next.put(window.duplicate().flip().position(end)); // The chunk may still be reading window
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.poll().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException("Interrupted while loading", e);
+        } finally {
+            for (Future<Chunk> future : inFlight) {
+                future.cancel(false); // Left over only if loading failed
+            }
+        }
+        
+        int total = 0;
+        for (Chunk chunk : chunkList) {
+            total += chunk.vehicles.size();
+        }
+        ArrayList<Vehicle> vehicles = new ArrayList<>(total);
+        int lines = 0;
+        int checksum = 0;
+        for (Chunk chunk : chunkList) {
+            vehicles.addAll(chunk.vehicles);
+            lines += chunk.lines;
+            checksum = combineChecksums(checksum, (int) chunk.crc.getValue(), chunk.checksumBytes);
+        }
+        return new ParallelTextLoader(vehicles, lines, checksum, chunkList.size(), firstLine, lastLine);
+    }
+    
+    /**
+     * Find the start of the line that a range of a buffer ends in
+     * @return Offset just past the last newline before to, or 0 if there is none
+     */
+    private static int lineStartBefore(ByteBuffer buffer, int to) {
+        while (to > 0 && buffer.get(to - 1) != '\n') {
+            to--;
+        }
+        return to;
+    }
+    
+    /**
+     * Get the last non-blank line before an offset
+     * @return Trimmed line, empty if there is none
+     */
+    private static String lastNonBlankLine(ByteBuffer buffer, int to) {
+        while (to > 0 && Character.isWhitespace(buffer.get(to - 1))) {
+            to--;
+        }
+        return lineAt(buffer, lineStartBefore(buffer, to), to);
+    }
+    
+    /**
+     * Decode a range of a buffer as one trimmed line
+     */
+    private static String lineAt(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+    
+    /**
+     * Find the start of the line after an offset
+     * @return Offset just past the next newline, or to if there is none
+     */
+    private static int lineStartAfter(ByteBuffer buffer, int offset, int to) {
+        while (offset < to && buffer.get(offset) != '\n') {
+            offset++;
+        }
+        return Math.min(offset + 1, to);
+    }
+    
+    /**
+     * Combine the CRC32C of two byte sequences into the CRC32C of both in order
+     * (zlib's crc32_combine: apply len2 zero bytes to crc1 as a GF(2) matrix power)
+     * @param crc1 Checksum of the first sequence
+     * @param crc2 Checksum of the second sequence
+     * @param len2 Length of the second sequence
+     * @return Checksum of the concatenation
+     */
+    static int combineChecksums(int crc1, int crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+        odd[0] = CRC32C_POLYNOMIAL; // Operator for one zero bit
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd); // Two zero bits
+        square(odd, even); // Four zero bits
+        
+        // Apply len2 zero bytes, one bit of len2 at a time
+        do {
+            square(even, odd);
+            if ((len2 & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            len2 >>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((len2 & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            len2 >>= 1;
+        } while (len2 != 0);
+        return crc1 ^ crc2;
+    }
+    
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+    
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+    
+    public ArrayList<Vehicle> getVehicles() {
+        return vehicles;
+    }
+    
+    /**
+     * Get the number of record lines, including lines that could not be parsed
+     * @return Record line count
+     */
+    public int getLines() {
+        return lines;
+    }
+    
+    /**
+     * Get the CRC32C of the record lines, each followed by a single newline
+     * @return Checksum
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+    
+    /**
+     * Get the number of chunks the file was parsed in
+     * @return Chunk count, 1 if it was parsed on the calling thread
+     */
+    public int getChunks() {
+        return chunks;
+    }
+    
+    /**
+     * Get the first line of the file (the header, if it has one)
+     * @return Trimmed line, empty for an empty file
+     */
+    public String getFirstLine() {
+        return firstLine;
+    }
+    
+    /**
+     * Get the last non-blank line of the file (the trailer, if it has one)
+     * @return Trimmed line, empty for an empty file
+     */
+    public String getLastLine() {
+        return lastLine;
+    }
+    
+    /**
+     * One range of lines, parsed by one task
+     */
+    private static class Chunk implements Callable<Chunk> {
+        private ByteBuffer buffer; // Released once parsed
+        private final int from;
+        private final int to;
+        private final ArrayList<Vehicle> vehicles = new ArrayList<>();
+        private final CRC32C crc = new CRC32C();
+        private long checksumBytes;
+        private int lines;
+        
+        Chunk(ByteBuffer buffer, int from, int to) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public Chunk call() {
+            byte[] bytes = new byte[256];
+            int start = from;
+            while (start < to) {
+                int next = lineStartAfter(buffer, start, to);
+                int end = next;
+                if (end > start && buffer.get(end - 1) == '\n') {
+                    end--;
+                }
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                int length = end - start;
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(start, bytes, 0, length);
+                start = next;
+                
+                String line = new String(bytes, 0, length, StandardCharsets.UTF_8).trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue; // Blank line, header or trailer
+                }
+                
+                lines++;
+                crc.update(bytes, 0, length);
+                crc.update('\n');
+                checksumBytes += length + 1;
+                Vehicle vehicle = FileHandler.parseVehicleRecord(line.split("\\|", -1), 0);
+                if (vehicle != null) {
+                    vehicles.add(vehicle);
+                } else {
+                    System.err.println("Error parsing vehicle data: " + line);
+                    // Skip invalid line
+                }
+            }
+            buffer = null;
+            return this;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package pms.util;
 
 import pms.model.Vehicle;
+import pms.model.VehicleType;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -22,6 +23,15 @@ public class Validator {
         return str == null || str.trim().isEmpty();
     }
     
+    /**
+     * Normalize a vehicle number for lookups and comparisons
+     * @param vehicleNumber Vehicle number to normalize
+     * @return Trimmed, upper-case vehicle number
+     */
+    public static String normalizeVehicleNumber(String vehicleNumber) {
+        return vehicleNumber.trim().toUpperCase();
+    }
+    
     /**
      * Validate vehicle number format
      * @param vehicleNumber Vehicle number to validate
@@ -120,16 +130,13 @@ public class Validator {
     /**
      * Validate vehicle type
      * @param vehicleType Vehicle type to validate
-     * @return true if valid (Car, Bike, or Van), false otherwise
+     * @return true if it names a defined type (Car, Bike, Van or a configured one), false otherwise
      */
     public static boolean isValidVehicleType(String vehicleType) {
         if (isEmpty(vehicleType)) {
             return false;
         }
-        String type = vehicleType.trim();
-        return "Car".equalsIgnoreCase(type) || 
-               "Bike".equalsIgnoreCase(type) || 
-               "Van".equalsIgnoreCase(type);
+        return VehicleType.lookup(vehicleType) != null;
     }
     
     /**
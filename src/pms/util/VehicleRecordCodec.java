@@ -0,0 +1,267 @@
+package pms.util;
+
+import pms.model.Vehicle;
+import pms.model.VehicleStatus;
+import pms.model.VehicleType;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary encoding of vehicle records
+ * File layout: header (magic "PMSB", version, flags, archive generation, snapshot id),
+ * then records, then a trailer: u16 0, i32 record count, i32 CRC32C of all record bytes
+ * Version 1 files have no snapshot id and no trailer
+ * Record layout: u16 length of the rest of the record, u8 plate length, plate (UTF-8),
+ * u8 type code, u8 status code, i32 slot, i64 entry, exit, fee cents and paid-at times,
+ * u8 payment code, i32 CRC32C of everything after the length field up to the CRC
+ * Known types, statuses and payment methods are stored as a one-byte code and decoded
+ * to shared constants; any other value is stored as code 0xFF followed by a u8-length string
+ * Times are epoch milliseconds (0 for none), so nothing is parsed when a record is read
+ * @author uSer
+ */
+public class VehicleRecordCodec {
+    public static final int MAGIC = 0x504D5342; // "PMSB"
+    public static final short VERSION = 2;
+    public static final int HEADER_BYTES = 20;
+    public static final int TRAILER_BYTES = 10;
+    private static final int V1_HEADER_BYTES = 12;
+    
+    // Largest record: the plate and three custom codes, each with a 255-byte string
+    public static final int MAX_RECORD_BYTES = 2 + 4 * (2 + 255) + 4 + 4 * 8 + 4;
+    
+    // Code tables, shared with MappedRecordFile; codes are an index into the table
+    private static final int CUSTOM_CODE = 0xFF;
+    static final VehicleType[] TYPES = {VehicleType.CAR, VehicleType.BIKE, VehicleType.VAN};
+    static final VehicleStatus[] STATUSES = {VehicleStatus.IN, VehicleStatus.OUT};
+    static final String[] PAYMENT_METHODS = {"", "Cash", "Credit Card", "Debit Card", "Mobile Payment", "Other"};
+    
+    private final CRC32C crc = new CRC32C();
+    private final byte[] scratch = new byte[255];
+    
+    /**
+     * Write the file header
+     * @param buffer Buffer with at least HEADER_BYTES remaining
+     * @param archiveGeneration History manifest generation the file relies on
+     * @param snapshotId Snapshot id, 0 for files that are not snapshots
+     */
+    public static void writeHeader(ByteBuffer buffer, int archiveGeneration, long snapshotId) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0); // Flags, reserved
+        buffer.putInt(archiveGeneration);
+        buffer.putLong(snapshotId);
+    }
+    
+    /**
+     * Read the file header
+     * @param buffer Buffer positioned at the start of the file
+     * @return Archive generation, or -1 if the header is missing or of an unknown version
+     */
+    public static int readHeader(ByteBuffer buffer) {
+        short version = versionOf(buffer);
+        if (version < 0) {
+            return -1;
+        }
+        buffer.position(buffer.position() + 8); // Magic, version, flags
+        int archiveGeneration = buffer.getInt();
+        if (version >= 2) {
+            buffer.getLong(); // Snapshot id
+        }
+        return archiveGeneration;
+    }
+    
+    /**
+     * Get the snapshot id from the file header
+     * @param buffer Buffer positioned at the start of the file (position is not changed)
+     * @return Snapshot id, 0 if the file has none
+     */
+    public static long readSnapshotId(ByteBuffer buffer) {
+        return versionOf(buffer) >= 2 ? buffer.getLong(buffer.position() + 12) : 0L;
+    }
+    
+    /**
+     * Check if the file ends in a trailer with its record count and checksum
+     * @param buffer Buffer positioned at the start of the file (position is not changed)
+     * @return true for version 2 files
+     */
+    public static boolean hasTrailer(ByteBuffer buffer) {
+        return versionOf(buffer) >= 2;
+    }
+    
+    /**
+     * Get the version from the file header
+     * @return Version, or -1 if the header is missing or of an unknown version
+     */
+    private static short versionOf(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < V1_HEADER_BYTES || buffer.getInt(start) != MAGIC) {
+            return -1;
+        }
+        short version = buffer.getShort(start + 4);
+        if (version == 1 || (version == VERSION && buffer.remaining() >= HEADER_BYTES)) {
+            return version;
+        }
+        return -1;
+    }
+    
+    /**
+     * Write the trailer that follows the last record
+     * @param buffer Buffer with at least TRAILER_BYTES remaining
+     * @param records Number of records in the file
+     * @param checksum CRC32C of all record bytes
+     */
+    public static void writeTrailer(ByteBuffer buffer, int records, int checksum) {
+        buffer.putShort((short) 0); // No record is this short
+        buffer.putInt(records);
+        buffer.putInt(checksum);
+    }
+    
+    /**
+     * Check if the buffer is positioned at the trailer rather than a record
+     * @param buffer Buffer positioned after the last record read
+     * @return true if a trailer follows
+     */
+    public static boolean isTrailer(ByteBuffer buffer) {
+        return buffer.remaining() >= 2 && buffer.getShort(buffer.position()) == 0;
+    }
+    
+    /**
+     * Check if a buffer starts with the binary file magic
+     * @param buffer Buffer positioned at the start of the file (position is not changed)
+     * @return true if the data is in binary format
+     */
+    public static boolean isBinary(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+    
+    /**
+     * Encode a record
+     * @param v Vehicle to encode
+     * @param buffer Buffer with at least MAX_RECORD_BYTES remaining
+     */
+    public void encode(Vehicle v, ByteBuffer buffer) {
+        int lengthAt = buffer.position();
+        buffer.position(lengthAt + 2);
+        int start = buffer.position();
+        
+        putString(buffer, v.getVehicleNumber());
+        putCoded(buffer, TYPES, v.getVehicleType());
+        putCoded(buffer, STATUSES, v.getStatus());
+        buffer.putInt(v.getSlotNumber());
+        buffer.putLong(v.getEntryTimeMillis());
+        buffer.putLong(v.getExitTimeMillis());
+        buffer.putLong(v.getFeeCents());
+        buffer.putLong(v.getPaidAtMillis());
+        putCoded(buffer, PAYMENT_METHODS, v.getPaymentMethod() != null ? v.getPaymentMethod() : "");
+        
+        int end = buffer.position();
+        buffer.putInt(checksum(buffer, start, end));
+        buffer.putShort(lengthAt, (short) (buffer.position() - start));
+    }
+    
+    /**
+     * Decode the record at the buffer's position and move past it
+     * @param buffer Buffer positioned at a record
+     * @return Decoded vehicle, or null if the record is corrupt (the buffer still moves past it)
+     * @throws BufferUnderflowException if the buffer ends inside the record
+     */
+    public Vehicle decode(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        int start = buffer.position();
+        int next = start + length;
+        if (length < 4 || next > buffer.limit()) {
+            throw new BufferUnderflowException();
+        }
+        
+        try {
+            if (checksum(buffer, start, next - 4) != buffer.getInt(next - 4)) {
+                return null;
+            }
+            String vehicleNumber = getString(buffer);
+            int typeCode = buffer.get() & 0xFF;
+            VehicleType vehicleType = typeCode == CUSTOM_CODE ? VehicleType.of(getString(buffer)) : decoded(TYPES, typeCode);
+            int statusCode = buffer.get() & 0xFF;
+            VehicleStatus status = statusCode == CUSTOM_CODE ? VehicleStatus.parse(getString(buffer)) : decoded(STATUSES, statusCode);
+            int slotNumber = buffer.getInt();
+            long entryTime = buffer.getLong();
+            long exitTime = buffer.getLong();
+            long feeCents = buffer.getLong();
+            long paidAt = buffer.getLong();
+            int paymentCode = buffer.get() & 0xFF;
+            String paymentMethod = paymentCode == CUSTOM_CODE ? getString(buffer) : decoded(PAYMENT_METHODS, paymentCode);
+            if (buffer.position() != next - 4 || (vehicleType == null && typeCode != CUSTOM_CODE)
+                    || status == null || paymentMethod == null) {
+                return null;
+            }
+            
+            Vehicle vehicle = new Vehicle(vehicleNumber, vehicleType, slotNumber, entryTime, exitTime, status);
+            vehicle.setFeeCents(feeCents);
+            vehicle.setPaymentMethod(paymentMethod.isEmpty() ? null : paymentMethod);
+            vehicle.setPaidAtMillis(paidAt);
+            return vehicle;
+        } catch (BufferUnderflowException e) {
+            return null; // Field lengths run past the record
+        } finally {
+            buffer.position(next);
+        }
+    }
+    
+    /**
+     * CRC32C of a range of the buffer; its position and limit are restored afterwards
+     */
+    private int checksum(ByteBuffer buffer, int from, int to) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        buffer.limit(to).position(from);
+        crc.reset();
+        crc.update(buffer);
+        buffer.limit(limit).position(position);
+        return (int) crc.getValue();
+    }
+    
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 255);
+        buffer.put((byte) length);
+        buffer.put(bytes, 0, length);
+    }
+    
+    private String getString(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Look up the code of a value
+     * @return Index of the value in the table, or -1 if it has no code
+     */
+    static int codeOf(Object[] known, Object value) {
+        for (int i = 0; i < known.length; i++) {
+            if (known[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static void putCoded(ByteBuffer buffer, Object[] known, Object value) {
+        int code = codeOf(known, value);
+        if (code >= 0) {
+            buffer.put((byte) code);
+            return;
+        }
+        buffer.put((byte) CUSTOM_CODE);
+        putString(buffer, value != null ? value.toString() : "");
+    }
+    
+    /**
+     * Look up a known code (a custom value, code 0xFF, is read by the caller)
+     * @return Shared constant for the code, or null for an unknown code
+     */
+    private static <T> T decoded(T[] known, int code) {
+        return code < known.length ? known[code] : null;
+    }
+}
@@ -24,6 +24,10 @@ public class DashboardFrame extends javax.swing.JFrame {
     private JLabel lblTodayVehicles;
     private JLabel lblTodayEarnings;
     private JLabel lblTotalEarnings;
+    private JLabel lblHistoryStatus;
+    
+    private Timer historyTimer; // Refreshes the statistics once the history is loaded
+    private static final int HISTORY_POLL_MS = 500;
     
     private JTable recentEntriesTable;
     private DefaultTableModel tableModel;
@@ -31,6 +35,7 @@ public class DashboardFrame extends javax.swing.JFrame {
     private JButton btnVehicleList;
     private JButton btnAddVehicle;
     private JButton btnEarningsReport;
+    private JButton btnMetrics;
     private JButton btnBack;
     private JButton btnRefresh;
     
@@ -46,6 +51,20 @@ public class DashboardFrame extends javax.swing.JFrame {
         initComponents();
         updateStatistics();
         applyRolePermissions();
+        
+        // History loads in the background after startup; refresh once it is in
+        historyTimer = new Timer(HISTORY_POLL_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (controller.isHistoryLoaded()) {
+                    historyTimer.stop();
+                    updateStatistics();
+                }
+            }
+        });
+        if (!controller.isHistoryLoaded()) {
+            historyTimer.start();
+        }
     }
     
     /**
@@ -140,6 +159,11 @@ public class DashboardFrame extends javax.swing.JFrame {
         statsPanel.add(label6);
         statsPanel.add(lblTotalEarnings);
         
+        // History loading state
+        lblHistoryStatus = new JLabel(" ", JLabel.CENTER);
+        lblHistoryStatus.setFont(new Font("Arial", Font.ITALIC, 12));
+        lblHistoryStatus.setForeground(Color.GRAY);
+        
         // Recent Entries Panel
         JPanel recentPanel = new JPanel();
         recentPanel.setLayout(new BorderLayout());
@@ -163,7 +187,7 @@ public class DashboardFrame extends javax.swing.JFrame {
         
         // Button panel
         JPanel buttonPanel = new JPanel();
-        buttonPanel.setLayout(new GridLayout(5, 1, 10, 10));
+        buttonPanel.setLayout(new GridLayout(6, 1, 10, 10));
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(20, 0, 0, 0));
         
         btnVehicleList = new JButton("Vehicle List");
@@ -198,6 +222,16 @@ public class DashboardFrame extends javax.swing.JFrame {
             }
         });
         
+        btnMetrics = new JButton("Metrics");
+        btnMetrics.setFont(new Font("Arial", Font.PLAIN, 14));
+        btnMetrics.setPreferredSize(new Dimension(200, 40));
+        btnMetrics.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openMetrics();
+            }
+        });
+        
         btnRefresh = new JButton("Refresh");
         btnRefresh.setFont(new Font("Arial", Font.PLAIN, 14));
         btnRefresh.setPreferredSize(new Dimension(200, 40));
@@ -221,6 +255,7 @@ public class DashboardFrame extends javax.swing.JFrame {
         buttonPanel.add(btnVehicleList);
         buttonPanel.add(btnAddVehicle);
         buttonPanel.add(btnEarningsReport);
+        buttonPanel.add(btnMetrics);
         buttonPanel.add(btnRefresh);
         buttonPanel.add(btnBack);
         
@@ -229,6 +264,7 @@ public class DashboardFrame extends javax.swing.JFrame {
         centerPanel.setLayout(new BorderLayout());
         centerPanel.add(statsPanel, BorderLayout.NORTH);
         centerPanel.add(recentPanel, BorderLayout.CENTER);
+        centerPanel.add(lblHistoryStatus, BorderLayout.SOUTH);
         
         mainPanel.add(titleLabel, BorderLayout.NORTH);
         mainPanel.add(centerPanel, BorderLayout.CENTER);
@@ -250,13 +286,15 @@ public class DashboardFrame extends javax.swing.JFrame {
         int todayCount = controller.getTodayVehicles().size();
         double todayEarnings = controller.getTodayEarnings();
         double totalEarnings = controller.getTotalEarnings();
+        boolean historyLoaded = controller.isHistoryLoaded();
         
         lblTotalSlots.setText(String.valueOf(total));
         lblOccupiedSlots.setText(String.valueOf(occupied));
         lblAvailableSlots.setText(String.valueOf(available));
         lblTodayVehicles.setText(String.valueOf(todayCount));
         lblTodayEarnings.setText(pms.util.FeeCalculator.formatFee(todayEarnings));
-        lblTotalEarnings.setText(pms.util.FeeCalculator.formatFee(totalEarnings));
+        lblTotalEarnings.setText(historyLoaded ? pms.util.FeeCalculator.formatFee(totalEarnings) : "Loading...");
+        lblHistoryStatus.setText(historyLoaded ? " " : "History loading... reports and search may be incomplete");
         
         // Update recent entries table
         updateRecentEntries();
@@ -270,6 +308,14 @@ public class DashboardFrame extends javax.swing.JFrame {
         earningsFrame.setVisible(true);
     }
     
+    /**
+     * Open metrics frame
+     */
+    private void openMetrics() {
+        MetricsFrame metricsFrame = new MetricsFrame(this);
+        metricsFrame.setVisible(true);
+    }
+    
     /**
      * Update the recent entries table with last 5 vehicles
      */
@@ -319,5 +365,11 @@ public class DashboardFrame extends javax.swing.JFrame {
             parentFrame.setVisible(true);
         }
     }
+    
+    @Override
+    public void dispose() {
+        historyTimer.stop();
+        super.dispose();
+    }
 }
 
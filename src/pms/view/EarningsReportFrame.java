@@ -1,14 +1,16 @@
 package pms.view;
 
 import pms.controller.ParkingController;
-import pms.controller.ParkingController.VehicleEarning;
+import pms.model.CheckedOutRecords;
 import pms.util.FeeCalculator;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Earnings report frame - Shows earnings breakdown by vehicle
@@ -19,12 +21,16 @@ public class EarningsReportFrame extends javax.swing.JFrame {
     private JFrame parentFrame;
     
     private JTable earningsTable;
-    private DefaultTableModel tableModel;
+    private EarningsTableModel tableModel;
     private JLabel lblTodayEarnings;
     private JLabel lblTotalEarnings;
     private JButton btnRefresh;
     private JButton btnBack;
     private JComboBox<String> cmbReportType;
+    private JProgressBar progressBar;
+    
+    private EarningsLoadWorker loadWorker; // Load currently filling the table
+    private static final int LOAD_PROGRESS_STEP = 500; // Records summed between progress updates
     
     /**
      * Creates new form EarningsReportFrame
@@ -100,13 +106,8 @@ public class EarningsReportFrame extends javax.swing.JFrame {
         tablePanel.setLayout(new BorderLayout());
         tablePanel.setBorder(BorderFactory.createTitledBorder("Vehicle Earnings Breakdown"));
         
-        String[] columnNames = {"Vehicle Number", "Vehicle Type", "Entry Time", "Exit Time", "Hours Parked", "Earnings"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Rows are read from the checked-out records as they are painted
+        tableModel = new EarningsTableModel();
         
         earningsTable = new JTable(tableModel);
         earningsTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -130,6 +131,12 @@ public class EarningsReportFrame extends javax.swing.JFrame {
         scrollPane.setPreferredSize(new Dimension(850, 350));
         tablePanel.add(scrollPane, BorderLayout.CENTER);
         
+        // Progress of background loads
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        tablePanel.add(progressBar, BorderLayout.SOUTH);
+        
         // Button panel
         JPanel buttonPanel = new JPanel();
         buttonPanel.setLayout(new FlowLayout(FlowLayout.CENTER, 10, 10));
@@ -172,6 +179,8 @@ public class EarningsReportFrame extends javax.swing.JFrame {
     
     /**
      * Load earnings data
+     * Summary totals are read directly; the breakdown table is filled in the background
+     * and a load still in progress is cancelled when the report type changes
      * @param reportType "All" or "Today Only"
      */
     private void loadEarnings(String reportType) {
@@ -182,44 +191,25 @@ public class EarningsReportFrame extends javax.swing.JFrame {
         lblTodayEarnings.setText(FeeCalculator.formatFee(todayEarnings));
         lblTotalEarnings.setText(FeeCalculator.formatFee(totalEarnings));
         
-        // Load vehicle earnings
-        ArrayList<VehicleEarning> earnings;
-        if ("Today Only".equals(reportType)) {
-            earnings = controller.getTodayVehicleEarnings();
-        } else {
-            earnings = controller.getVehicleEarnings();
+        if (loadWorker != null && !loadWorker.isDone()) {
+            loadWorker.cancel(true);
         }
         
         // Clear and populate table
-        tableModel.setRowCount(0);
-        
-        double tableTotal = 0.0;
-        for (VehicleEarning earning : earnings) {
-            pms.model.Vehicle v = earning.getVehicle();
-            double fee = earning.getEarnings();
-            tableTotal += fee;
-            
-            // Calculate hours
-            double hours = FeeCalculator.calculateHours(v.getEntryTime(), v.getExitTime());
-            
-            Object[] row = {
-                v.getVehicleNumber(),
-                v.getVehicleType(),
-                v.getEntryTime(),
-                v.getExitTime(),
-                String.format("%.2f hours", hours),
-                FeeCalculator.formatFee(fee)
-            };
-            tableModel.addRow(row);
-        }
+        tableModel.clear();
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
         
-        // Add total row if there are earnings
-        if (earnings.size() > 0) {
-            tableModel.addRow(new Object[]{
-                "TOTAL", "", "", "", "",
-                FeeCalculator.formatFee(tableTotal)
-            });
-        }
+        loadWorker = new EarningsLoadWorker("Today Only".equals(reportType));
+        loadWorker.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if ("progress".equals(evt.getPropertyName()) && evt.getSource() == loadWorker) {
+                    progressBar.setValue((Integer) evt.getNewValue());
+                }
+            }
+        });
+        loadWorker.execute();
     }
     
     /**
@@ -231,5 +221,74 @@ public class EarningsReportFrame extends javax.swing.JFrame {
             parentFrame.setVisible(true);
         }
     }
+    
+    @Override
+    public void dispose() {
+        // Stop a load that would otherwise keep filling a closed window
+        if (loadWorker != null) {
+            loadWorker.cancel(true);
+        }
+        super.dispose();
+    }
+    
+    /**
+     * Background worker that takes a snapshot of the checked-out records off the EDT,
+     * hands it to the table, and then sums the fees for the total row
+     */
+    private class EarningsLoadWorker extends SwingWorker<Double, CheckedOutRecords> {
+        private final boolean todayOnly;
+        private volatile CheckedOutRecords records;
+        
+        EarningsLoadWorker(boolean todayOnly) {
+            this.todayOnly = todayOnly;
+        }
+        
+        @Override
+        protected Double doInBackground() {
+            // Rows are copied by the table model only when they are painted
+            records = controller.getCheckedOutRecords(todayOnly);
+            publish(records);
+            
+            // Sum through the records without copying them
+            long size = records.size();
+            long[] summed = {0, 0}; // Records summed, total cents
+            records.forEach(record -> {
+                if (isCancelled()) {
+                    return;
+                }
+                summed[1] += record.getFeeCents();
+                if (++summed[0] % LOAD_PROGRESS_STEP == 0) {
+                    setProgress((int) (summed[0] * 100 / size));
+                }
+            });
+            setProgress(100);
+            return summed[1] / 100.0;
+        }
+        
+        @Override
+        protected void process(List<CheckedOutRecords> chunks) {
+            // A superseded load may still be queued
+            if (isCancelled() || loadWorker != this) {
+                return;
+            }
+            tableModel.setRecords(chunks.get(chunks.size() - 1));
+        }
+        
+        @Override
+        protected void done() {
+            if (isCancelled() || loadWorker != this) {
+                return;
+            }
+            progressBar.setVisible(false);
+            
+            try {
+                // Add total row if there are earnings; the records may not have been published yet
+                double total = get();
+                tableModel.setRecords(records);
+                tableModel.setTotal(total);
+            } catch (InterruptedException | ExecutionException e) {
+                System.err.println("Error loading earnings: " + e.getMessage());
+            }
+        }
+    }
 }
-
@@ -0,0 +1,137 @@
+package pms.view;
+
+import pms.model.CheckedOutRecords;
+import pms.model.Vehicle;
+import pms.util.FeeCalculator;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+
+/**
+ * Table model for the earnings breakdown
+ * Reads the checked-out records a page at a time as rows are painted, so only the pages
+ * on screen are copied out of the history; hours and formatted fees are computed on demand
+ * A TOTAL row follows the entries once the total is known
+ * @author uSer
+ */
+public class EarningsTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"Vehicle Number", "Vehicle Type", "Entry Time", "Exit Time", "Hours Parked", "Earnings"};
+    
+    private static final int PAGE_SIZE = 200; // Rows read from the records at a time
+    
+    private CheckedOutRecords records;
+    private int entryCount;
+    private ArrayList<Vehicle> page; // Cached page of records
+    private long pageFirst; // Row of the page's first record
+    private boolean showTotal;
+    private double total;
+    
+    // Constructor
+    public EarningsTableModel() {
+        this.records = CheckedOutRecords.empty();
+        this.page = new ArrayList<>();
+    }
+    
+    @Override
+    public int getRowCount() {
+        return entryCount + (showTotal ? 1 : 0);
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+    
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (row == entryCount) {
+            // Total row
+            return column == 0 ? "TOTAL" : column == 5 ? FeeCalculator.formatFee(total) : "";
+        }
+        
+        Vehicle v = getVehicle(row);
+        if (v == null) {
+            return ""; // Record could not be read
+        }
+        switch (column) {
+            case 0:
+                return v.getVehicleNumber();
+            case 1:
+                return v.getVehicleType() != null ? v.getVehicleType().getName() : "";
+            case 2:
+                return v.getEntryTime();
+            case 3:
+                return v.getExitTime();
+            case 4:
+                // Calculate hours
+                double hours = FeeCalculator.calculateHours(v.getEntryTimeMillis(), v.getExitTimeMillis());
+                return String.format("%.2f hours", hours);
+            case 5:
+                return FeeCalculator.formatFee(v.getFee());
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Get the record shown in a row, reading its page if it is not cached
+     * @param row Row number (not the total row)
+     * @return Vehicle record, or null if it could not be read
+     */
+    private Vehicle getVehicle(int row) {
+        if (row < pageFirst || row >= pageFirst + page.size()) {
+            pageFirst = row - row % PAGE_SIZE;
+            page = records.getRange(pageFirst, PAGE_SIZE);
+        }
+        int index = (int) (row - pageFirst);
+        return index < page.size() ? page.get(index) : null;
+    }
+    
+    /**
+     * Remove all rows, including the total
+     */
+    public void clear() {
+        setRecords(CheckedOutRecords.empty());
+    }
+    
+    /**
+     * Show a set of checked-out records, one row each, and drop the total row
+     * Does nothing if the records are already shown
+     * @param records Records to show
+     */
+    public void setRecords(CheckedOutRecords records) {
+        if (records == this.records) {
+            return;
+        }
+        this.records = records;
+        this.entryCount = (int) Math.min(records.size(), Integer.MAX_VALUE - 1);
+        this.page = new ArrayList<>();
+        this.pageFirst = 0;
+        showTotal = false;
+        total = 0.0;
+        fireTableDataChanged();
+    }
+    
+    /**
+     * Show the TOTAL row below the records (only if there are any)
+     * @param total Sum of the records' fees
+     */
+    public void setTotal(double total) {
+        this.total = total;
+        if (showTotal) {
+            fireTableRowsUpdated(entryCount, entryCount);
+        } else if (entryCount > 0) {
+            showTotal = true;
+            fireTableRowsInserted(entryCount, entryCount);
+        }
+    }
+}
@@ -147,8 +147,8 @@ public class HomeFrame extends javax.swing.JFrame {
         );
         
         if (confirm == JOptionPane.YES_OPTION) {
-            // Save data before exit
-            controller.saveAllData();
+            // Save data and flush the journal before exit
+            controller.shutdown();
             System.exit(0);
         }
     }
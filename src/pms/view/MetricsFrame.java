@@ -0,0 +1,162 @@
+package pms.view;
+
+import pms.metrics.MetricsExporter;
+import pms.metrics.MetricsRegistry;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Metrics frame - Shows live counters, gauges and latency percentiles
+ * @author uSer
+ */
+public class MetricsFrame extends javax.swing.JFrame {
+    private JFrame parentFrame;
+    
+    private JTable metricsTable;
+    private DefaultTableModel tableModel;
+    private JButton btnSaveDump;
+    private JButton btnBack;
+    
+    private Timer refreshTimer;
+    private static final int REFRESH_MS = 1000;
+    
+    /**
+     * Creates new form MetricsFrame
+     * @param parent Parent frame (usually DashboardFrame)
+     */
+    public MetricsFrame(JFrame parent) {
+        this.parentFrame = parent;
+        initComponents();
+        refreshMetrics();
+        
+        // Keep the figures live while the frame is open
+        refreshTimer = new Timer(REFRESH_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                refreshMetrics();
+            }
+        });
+        refreshTimer.start();
+    }
+    
+    /**
+     * Initialize components
+     */
+    private void initComponents() {
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+        setTitle("Parking Management System - Metrics");
+        setResizable(true);
+        setSize(900, 500);
+        
+        // Main panel
+        JPanel mainPanel = new JPanel();
+        mainPanel.setLayout(new BorderLayout());
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        
+        // Title
+        JLabel titleLabel = new JLabel("Metrics", JLabel.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
+        titleLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 15, 0));
+        
+        // Metrics table
+        String[] columnNames = {"Metric", "Description", "Value"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        metricsTable = new JTable(tableModel);
+        metricsTable.setFont(new Font("Arial", Font.PLAIN, 11));
+        metricsTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 11));
+        metricsTable.setRowHeight(20);
+        metricsTable.getColumnModel().getColumn(0).setPreferredWidth(170);
+        metricsTable.getColumnModel().getColumn(1).setPreferredWidth(260);
+        metricsTable.getColumnModel().getColumn(2).setPreferredWidth(420);
+        JScrollPane scrollPane = new JScrollPane(metricsTable);
+        
+        // Button panel
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setLayout(new FlowLayout(FlowLayout.CENTER, 10, 10));
+        
+        btnSaveDump = new JButton("Save Text Dump");
+        btnSaveDump.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                saveDump();
+            }
+        });
+        
+        btnBack = new JButton("Back");
+        btnBack.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                goBack();
+            }
+        });
+        
+        buttonPanel.add(btnSaveDump);
+        buttonPanel.add(btnBack);
+        
+        mainPanel.add(titleLabel, BorderLayout.NORTH);
+        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        add(mainPanel);
+        
+        setLocationRelativeTo(parentFrame);
+    }
+    
+    /**
+     * Reload all metric values, keeping the selected row
+     */
+    private void refreshMetrics() {
+        int selected = metricsTable.getSelectedRow();
+        ArrayList<String[]> rows = MetricsRegistry.getInstance().snapshot();
+        tableModel.setRowCount(0);
+        for (String[] row : rows) {
+            tableModel.addRow(row);
+        }
+        if (selected >= 0 && selected < tableModel.getRowCount()) {
+            metricsTable.setRowSelectionInterval(selected, selected);
+        }
+    }
+    
+    /**
+     * Save the text dump to a file chosen by the user
+     */
+    private void saveDump() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("pms_metrics.txt"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        if (MetricsExporter.writeDump(chooser.getSelectedFile())) {
+            JOptionPane.showMessageDialog(this, "Metrics saved to " + chooser.getSelectedFile().getAbsolutePath(),
+                    "Metrics", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this, "Error saving metrics!", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Go back to parent frame
+     */
+    private void goBack() {
+        this.dispose();
+        if (parentFrame != null) {
+            parentFrame.setVisible(true);
+        }
+    }
+    
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+}
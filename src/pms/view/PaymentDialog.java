@@ -1,6 +1,7 @@
 package pms.view;
 
 import pms.model.Vehicle;
+import pms.util.DateTimeUtil;
 import pms.util.FeeCalculator;
 import javax.swing.*;
 import java.awt.*;
@@ -78,12 +79,10 @@ public class PaymentDialog extends javax.swing.JDialog {
         
         // Hours Parked
         double hours = 0.0;
-        if (vehicle.getExitTime() != null && !vehicle.getExitTime().isEmpty()) {
-            hours = FeeCalculator.calculateHours(vehicle.getEntryTime(), vehicle.getExitTime());
+        if (vehicle.hasExitTime()) {
+            hours = FeeCalculator.calculateHours(vehicle.getEntryTimeMillis(), vehicle.getExitTimeMillis());
         } else {
-            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String currentTime = sdf.format(new java.util.Date());
-            hours = FeeCalculator.calculateHours(vehicle.getEntryTime(), currentTime);
+            hours = FeeCalculator.calculateHours(vehicle.getEntryTimeMillis(), DateTimeUtil.now());
         }
         
         gbc.gridx = 0; gbc.gridy = 1;
@@ -194,7 +193,7 @@ public class PaymentDialog extends javax.swing.JDialog {
                 vehicle.getVehicleNumber(),
                 FeeCalculator.formatFee(fee),
                 selectedPaymentMethod,
-                new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date())
+                DateTimeUtil.format(DateTimeUtil.now())
             );
             
             JOptionPane.showMessageDialog(this, 
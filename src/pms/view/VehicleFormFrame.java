@@ -2,12 +2,13 @@ package pms.view;
 
 import pms.controller.ParkingController;
 import pms.model.Vehicle;
+import pms.model.VehicleStatus;
+import pms.model.VehicleType;
+import pms.util.DateTimeUtil;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * Vehicle form frame - For adding/editing vehicles
@@ -20,7 +21,7 @@ public class VehicleFormFrame extends javax.swing.JDialog {
     private boolean isEditMode;
     
     private JTextField txtVehicleNumber;
-    private JComboBox<String> cmbVehicleType;
+    private JComboBox<VehicleType> cmbVehicleType;
     private JComboBox<Integer> cmbSlotNumber;
     private JTextField txtEntryTime;
     private JButton btnSave;
@@ -85,7 +86,7 @@ public class VehicleFormFrame extends javax.swing.JDialog {
         gbc.gridx = 0; gbc.gridy = 1;
         formPanel.add(new JLabel("Vehicle Type:"), gbc);
         gbc.gridx = 1;
-        cmbVehicleType = new JComboBox<>(new String[]{"Car", "Bike", "Van"});
+        cmbVehicleType = new JComboBox<>(VehicleType.values().toArray(new VehicleType[0]));
         formPanel.add(cmbVehicleType, gbc);
         
         // Slot Number
@@ -159,8 +160,7 @@ public class VehicleFormFrame extends javax.swing.JDialog {
      * Set current time in entry time field
      */
     private void setCurrentTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        txtEntryTime.setText(sdf.format(new Date()));
+        txtEntryTime.setText(DateTimeUtil.format(DateTimeUtil.now()));
     }
     
     /**
@@ -180,7 +180,7 @@ public class VehicleFormFrame extends javax.swing.JDialog {
      */
     private void saveVehicle() {
         String vehicleNumber = txtVehicleNumber.getText().trim();
-        String vehicleType = (String) cmbVehicleType.getSelectedItem();
+        VehicleType vehicleType = (VehicleType) cmbVehicleType.getSelectedItem();
         Integer slotNumberObj = (Integer) cmbSlotNumber.getSelectedItem();
         String entryTime = txtEntryTime.getText().trim();
         
@@ -212,6 +212,13 @@ public class VehicleFormFrame extends javax.swing.JDialog {
             return;
         }
         
+        if (!controller.isValidDateTime(entryTime)) {
+            JOptionPane.showMessageDialog(this, 
+                "Invalid entry time! Use the format yyyy-MM-dd HH:mm:ss.", 
+                "Validation Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
         // Check for duplicate vehicle number
         if (isEditMode) {
             if (controller.isDuplicateVehicle(vehicleNumber, vehicleToEdit.getVehicleNumber())) {
@@ -232,7 +239,7 @@ public class VehicleFormFrame extends javax.swing.JDialog {
         // Check for duplicate IN status (prevent same vehicle having IN status twice)
         if (!isEditMode) {
             Vehicle existing = controller.getVehicleByNumber(vehicleNumber);
-            if (existing != null && "IN".equals(existing.getStatus())) {
+            if (existing != null && existing.getStatus() == VehicleStatus.IN) {
                 JOptionPane.showMessageDialog(this, 
                     "This vehicle is already parked (status: IN)! Cannot add duplicate entry.", 
                     "Validation Error", JOptionPane.ERROR_MESSAGE);
@@ -260,7 +267,7 @@ public class VehicleFormFrame extends javax.swing.JDialog {
         }
         
         // Create vehicle object
-        Vehicle vehicle = new Vehicle(vehicleNumber, vehicleType, slotNumber, entryTime, "IN");
+        Vehicle vehicle = new Vehicle(vehicleNumber, vehicleType, slotNumber, entryTime, VehicleStatus.IN);
         
         // Save vehicle
         boolean success;
@@ -291,9 +298,14 @@ public class VehicleFormFrame extends javax.swing.JDialog {
             ((DashboardFrame) parentFrame).updateStatistics();
         }
         
-        // Refresh parent frame if it's VehicleListFrame
+        // Refresh parent frame if it's VehicleListFrame (only the affected row)
         if (parentFrame instanceof VehicleListFrame) {
-            ((VehicleListFrame) parentFrame).loadVehicles();
+            if (isEditMode) {
+                // The store updates the record the form was opened with in place
+                ((VehicleListFrame) parentFrame).vehicleUpdated(vehicleToEdit);
+            } else {
+                ((VehicleListFrame) parentFrame).vehicleAdded(vehicle);
+            }
         }
         
         dispose();
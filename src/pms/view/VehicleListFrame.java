@@ -2,18 +2,25 @@ package pms.view;
 
 import pms.controller.ParkingController;
 import pms.model.Vehicle;
+import pms.model.VehicleRecord;
+import pms.model.VehicleStatus;
+import pms.util.DateTimeUtil;
 import pms.util.FeeCalculator;
 import pms.util.BillGenerator;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * Vehicle list frame - Displays vehicles in a table with search and sort
@@ -23,9 +30,11 @@ public class VehicleListFrame extends javax.swing.JFrame {
     private ParkingController controller;
     private JFrame parentFrame;
     private String userRole;
+    private static final int LOAD_PROGRESS_STEP = 500; // Vehicles between progress updates
+    private static final int SEARCH_DEBOUNCE_MS = 250; // Typing pause before a live search runs
     
     private JTable vehicleTable;
-    private DefaultTableModel tableModel;
+    private VehicleTableModel tableModel;
     private JTextField txtSearch;
     private JComboBox<String> cmbSearchType;
     private JButton btnAdd;
@@ -41,7 +50,10 @@ public class VehicleListFrame extends javax.swing.JFrame {
     private JButton btnRefresh;
     private JButton btnBack;
     
-    private ArrayList<Vehicle> currentVehicleList;
+    private JProgressBar progressBar;
+    private Timer searchTimer; // Debounces search-as-you-type
+    
+    private VehicleLoadWorker loadWorker; // Load currently filling the table
     
     /**
      * Creates new form VehicleListFrame
@@ -52,7 +64,6 @@ public class VehicleListFrame extends javax.swing.JFrame {
         this.parentFrame = parent;
         this.userRole = userRole;
         this.controller = ParkingController.getInstance();
-        this.currentVehicleList = new ArrayList<>();
         initComponents();
         loadVehicles();
         applyRolePermissions();
@@ -125,11 +136,36 @@ public class VehicleListFrame extends javax.swing.JFrame {
         txtSearch = new JTextField(15);
         searchPanel.add(txtSearch);
         
+        // Search as you type, once the operator pauses
+        searchTimer = new Timer(SEARCH_DEBOUNCE_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                searchVehicle(true);
+            }
+        });
+        searchTimer.setRepeats(false);
+        txtSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        
         btnSearch = new JButton("Search");
         btnSearch.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                searchVehicle();
+                searchVehicle(false);
             }
         });
         searchPanel.add(btnSearch);
@@ -157,14 +193,8 @@ public class VehicleListFrame extends javax.swing.JFrame {
         tablePanel.setLayout(new BorderLayout());
         tablePanel.setBorder(BorderFactory.createTitledBorder("Vehicles"));
         
-        // Table
-        String[] columnNames = {"Vehicle Number", "Vehicle Type", "Slot Number", "Entry Time", "Status"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table non-editable
-            }
-        };
+        // Table (rows are read lazily from the vehicle records)
+        tableModel = new VehicleTableModel();
         
         vehicleTable = new JTable(tableModel);
         vehicleTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -176,6 +206,12 @@ public class VehicleListFrame extends javax.swing.JFrame {
         scrollPane.setPreferredSize(new Dimension(750, 350));
         tablePanel.add(scrollPane, BorderLayout.CENTER);
         
+        // Progress of background loads
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        tablePanel.add(progressBar, BorderLayout.SOUTH);
+        
         // Sort panel
         JPanel sortPanel = new JPanel();
         sortPanel.setLayout(new FlowLayout(FlowLayout.LEFT));
@@ -263,8 +299,8 @@ public class VehicleListFrame extends javax.swing.JFrame {
                 boolean hasSelection = vehicleTable.getSelectedRow() >= 0;
                 
                 if (hasSelection) {
-                    Vehicle selectedVehicle = currentVehicleList.get(vehicleTable.getSelectedRow());
-                    boolean isCheckedOut = "OUT".equals(selectedVehicle.getStatus());
+                    Vehicle selectedVehicle = tableModel.getVehicleAt(vehicleTable.getSelectedRow());
+                    boolean isCheckedOut = selectedVehicle.getStatus() == VehicleStatus.OUT;
                     
                     // Only enable Edit/Delete if user is Admin AND has selection
                     if ("Admin".equals(userRole)) {
@@ -322,35 +358,63 @@ public class VehicleListFrame extends javax.swing.JFrame {
     /**
      * Load vehicles into table
      * Made public so it can be called from other frames
+     * Runs in the background; rows appear as they are published
      */
     public void loadVehicles() {
-        currentVehicleList = controller.getAllVehicles();
-        refreshTable();
+        startLoad(new VehicleLoadWorker(null, null, null, false, null, null));
     }
     
     /**
-     * Refresh table with current vehicle list
+     * Start a background load, cancelling any load still in progress
+     * @param worker Worker that fills the table
      */
-    private void refreshTable() {
-        tableModel.setRowCount(0); // Clear table
-        
-        for (Vehicle v : currentVehicleList) {
-            Object[] row = {
-                v.getVehicleNumber(),
-                v.getVehicleType(),
-                v.getSlotNumber(),
-                v.getEntryTime(),
-                v.getStatus()
-            };
-            tableModel.addRow(row);
+    private void startLoad(VehicleLoadWorker worker) {
+        if (loadWorker != null && !loadWorker.isDone()) {
+            loadWorker.cancel(true);
         }
+        loadWorker = worker;
+        
+        tableModel.clear(); // Clear table
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        
+        worker.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if ("progress".equals(evt.getPropertyName()) && evt.getSource() == loadWorker) {
+                    progressBar.setValue((Integer) evt.getNewValue());
+                }
+            }
+        });
+        worker.execute();
+    }
+    
+    /**
+     * Show a vehicle that was just added, without reloading the table
+     * @param v Vehicle that was added
+     */
+    public void vehicleAdded(Vehicle v) {
+        tableModel.addVehicle(v);
     }
     
     /**
-     * Advanced search with multiple criteria (Linear Search Algorithm)
-     * Time Complexity: O(n) where n is the number of vehicles
+     * Repaint a vehicle that was changed in place, without reloading the table
+     * @param v Vehicle record that changed
      */
-    private void searchVehicle() {
+    public void vehicleUpdated(Vehicle v) {
+        tableModel.vehicleUpdated(v);
+        vehicleTable.clearSelection(); // Button states depend on the old status
+    }
+    
+    /**
+     * Advanced search with multiple criteria
+     * Vehicle numbers are looked up in the plate search index; slot number and
+     * vehicle type use a linear search, O(n) where n is the number of vehicles
+     * The search runs in the background
+     * @param asYouType true when triggered by typing (no dialogs), false for the Search button
+     */
+    private void searchVehicle(boolean asYouType) {
+        searchTimer.stop();
         String searchText = txtSearch.getText().trim();
         String searchType = (String) cmbSearchType.getSelectedItem();
         
@@ -359,75 +423,70 @@ public class VehicleListFrame extends javax.swing.JFrame {
             return;
         }
         
-        // Linear Search Algorithm - O(n) time complexity
-        ArrayList<Vehicle> searchResults = new ArrayList<>();
-        String searchUpper = searchText.toUpperCase();
-        
-        for (Vehicle v : controller.getAllVehicles()) {
-            boolean matches = false;
-            
-            if ("Vehicle Number".equals(searchType)) {
-                // Search by vehicle number
-                matches = v.getVehicleNumber().toUpperCase().contains(searchUpper);
-            } else if ("Slot Number".equals(searchType)) {
-                // Search by slot number
-                try {
-                    int searchSlot = Integer.parseInt(searchText);
-                    matches = v.getSlotNumber() == searchSlot;
-                } catch (NumberFormatException e) {
+        // Validate input on the EDT before starting the scan
+        if ("Slot Number".equals(searchType)) {
+            try {
+                Integer.parseInt(searchText);
+            } catch (NumberFormatException e) {
+                if (!asYouType) {
                     JOptionPane.showMessageDialog(this, 
                         "Please enter a valid slot number!", 
                         "Invalid Input", JOptionPane.ERROR_MESSAGE);
-                    return;
                 }
-            } else if ("Vehicle Type".equals(searchType)) {
-                // Search by vehicle type
-                matches = v.getVehicleType().toUpperCase().contains(searchUpper);
-            }
-            
-            if (matches) {
-                searchResults.add(v);
+                return;
             }
         }
         
-        currentVehicleList = searchResults;
-        refreshTable();
-        
-        if (searchResults.isEmpty()) {
-            JOptionPane.showMessageDialog(this, 
-                "No vehicles found matching: " + searchText + " (by " + searchType + ")", 
-                "Search Result", JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            JOptionPane.showMessageDialog(this, 
-                "Found " + searchResults.size() + " vehicle(s) matching: " + searchText + " (by " + searchType + ")", 
-                "Search Result", JOptionPane.INFORMATION_MESSAGE);
+        startLoad(new VehicleLoadWorker(null, searchText, searchType, asYouType, null, null));
+    }
+    
+    /**
+     * Check if a vehicle record matches a search
+     * @param v Vehicle record to check
+     * @param searchText Search text (already validated)
+     * @param searchType "Slot Number" or "Vehicle Type" (vehicle numbers use the plate index)
+     * @return true if it matches, false otherwise
+     */
+    private static boolean matchesSearch(VehicleRecord v, String searchText, String searchType) {
+        String searchUpper = searchText.toUpperCase();
+        if ("Slot Number".equals(searchType)) {
+            // Search by slot number
+            return v.getSlotNumber() == Integer.parseInt(searchText);
+        } else if ("Vehicle Type".equals(searchType)) {
+            // Search by vehicle type
+            return v.getVehicleType() != null && v.getVehicleType().getName().toUpperCase().contains(searchUpper);
         }
+        return false;
     }
     
     /**
-     * Sort vehicles by slot number (Collections.sort with Comparator)
-     * Time Complexity: O(n log n) where n is the number of vehicles
+     * Sort the vehicles currently shown in the background
+     * @param comparator Sort order
+     * @param sortName Name shown in the confirmation message
      */
-    private void sortBySlotNumber() {
-        if (currentVehicleList.isEmpty()) {
+    private void sortVehicles(Comparator<Vehicle> comparator, String sortName) {
+        if (tableModel.getRowCount() == 0) {
             JOptionPane.showMessageDialog(this, 
                 "No vehicles to sort!", 
                 "Sort", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
         
+        startLoad(new VehicleLoadWorker(tableModel.getVehicles(), null, null, false, comparator, sortName));
+    }
+    
+    /**
+     * Sort vehicles by slot number (Collections.sort with Comparator)
+     * Time Complexity: O(n log n) where n is the number of vehicles
+     */
+    private void sortBySlotNumber() {
         // Sort using Collections.sort with Comparator - O(n log n) time complexity
-        Collections.sort(currentVehicleList, new Comparator<Vehicle>() {
+        sortVehicles(new Comparator<Vehicle>() {
             @Override
             public int compare(Vehicle v1, Vehicle v2) {
                 return Integer.compare(v1.getSlotNumber(), v2.getSlotNumber());
             }
-        });
-        
-        refreshTable();
-        JOptionPane.showMessageDialog(this, 
-            "Vehicles sorted by Slot Number!", 
-            "Sort", JOptionPane.INFORMATION_MESSAGE);
+        }, "Slot Number");
     }
     
     /**
@@ -435,25 +494,13 @@ public class VehicleListFrame extends javax.swing.JFrame {
      * Time Complexity: O(n log n) where n is the number of vehicles
      */
     private void sortByVehicleNumber() {
-        if (currentVehicleList.isEmpty()) {
-            JOptionPane.showMessageDialog(this, 
-                "No vehicles to sort!", 
-                "Sort", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
-        
         // Sort using Collections.sort with Comparator - O(n log n) time complexity
-        Collections.sort(currentVehicleList, new Comparator<Vehicle>() {
+        sortVehicles(new Comparator<Vehicle>() {
             @Override
             public int compare(Vehicle v1, Vehicle v2) {
                 return v1.getVehicleNumber().compareToIgnoreCase(v2.getVehicleNumber());
             }
-        });
-        
-        refreshTable();
-        JOptionPane.showMessageDialog(this, 
-            "Vehicles sorted by Vehicle Number!", 
-            "Sort", JOptionPane.INFORMATION_MESSAGE);
+        }, "Vehicle Number");
     }
     
     /**
@@ -461,26 +508,14 @@ public class VehicleListFrame extends javax.swing.JFrame {
      * Time Complexity: O(n log n) where n is the number of vehicles
      */
     private void sortByEntryTime() {
-        if (currentVehicleList.isEmpty()) {
-            JOptionPane.showMessageDialog(this, 
-                "No vehicles to sort!", 
-                "Sort", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
-        
         // Sort using Collections.sort with Comparator - O(n log n) time complexity
-        Collections.sort(currentVehicleList, new Comparator<Vehicle>() {
+        sortVehicles(new Comparator<Vehicle>() {
             @Override
             public int compare(Vehicle v1, Vehicle v2) {
-                // Compare entry times (assuming format: yyyy-MM-dd HH:mm:ss)
-                return v1.getEntryTime().compareTo(v2.getEntryTime());
+                // Compare entry times as epoch milliseconds
+                return Long.compare(v1.getEntryTimeMillis(), v2.getEntryTimeMillis());
             }
-        });
-        
-        refreshTable();
-        JOptionPane.showMessageDialog(this, 
-            "Vehicles sorted by Entry Time!", 
-            "Sort", JOptionPane.INFORMATION_MESSAGE);
+        }, "Entry Time");
     }
     
     /**
@@ -488,8 +523,7 @@ public class VehicleListFrame extends javax.swing.JFrame {
      */
     private void addVehicle() {
         VehicleFormFrame form = new VehicleFormFrame(this);
-        form.setVisible(true);
-        loadVehicles(); // Refresh after adding
+        form.setVisible(true); // The form reports the new vehicle back via vehicleAdded
     }
     
     /**
@@ -513,10 +547,9 @@ public class VehicleListFrame extends javax.swing.JFrame {
             return;
         }
         
-        Vehicle selectedVehicle = currentVehicleList.get(selectedRow);
+        Vehicle selectedVehicle = tableModel.getVehicleAt(selectedRow);
         VehicleFormFrame form = new VehicleFormFrame(this, selectedVehicle);
-        form.setVisible(true);
-        loadVehicles(); // Refresh after editing
+        form.setVisible(true); // The form reports the change back via vehicleUpdated
     }
     
     /**
@@ -540,7 +573,7 @@ public class VehicleListFrame extends javax.swing.JFrame {
             return;
         }
         
-        Vehicle selectedVehicle = currentVehicleList.get(selectedRow);
+        Vehicle selectedVehicle = tableModel.getVehicleAt(selectedRow);
         
         // Confirm delete
         int confirm = JOptionPane.showConfirmDialog(
@@ -552,13 +585,13 @@ public class VehicleListFrame extends javax.swing.JFrame {
         );
         
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = controller.deleteVehicle(selectedVehicle.getVehicleNumber());
+            boolean success = controller.deleteRecord(selectedVehicle); // The selected row, not the number's latest record
             
             if (success) {
                 JOptionPane.showMessageDialog(this, 
                     "Vehicle deleted successfully!", 
                     "Success", JOptionPane.INFORMATION_MESSAGE);
-                loadVehicles(); // Refresh after deleting
+                tableModel.removeVehicle(selectedVehicle); // Refresh after deleting
                 
                 // Refresh parent frame if it's DashboardFrame
                 if (parentFrame instanceof DashboardFrame) {
@@ -585,10 +618,10 @@ public class VehicleListFrame extends javax.swing.JFrame {
             return;
         }
         
-        Vehicle selectedVehicle = currentVehicleList.get(selectedRow);
+        Vehicle selectedVehicle = tableModel.getVehicleAt(selectedRow);
         
         // Check if already checked out
-        if ("OUT".equals(selectedVehicle.getStatus())) {
+        if (selectedVehicle.getStatus() == VehicleStatus.OUT) {
             JOptionPane.showMessageDialog(this, 
                 "This vehicle is already checked out!", 
                 "Already Checked Out", JOptionPane.INFORMATION_MESSAGE);
@@ -620,11 +653,12 @@ public class VehicleListFrame extends javax.swing.JFrame {
                     // Check if payment was confirmed
                     if (paymentDialog.isPaymentConfirmed()) {
                         String paymentMethod = paymentDialog.getPaymentMethod();
+                        controller.recordPayment(updatedVehicle.getVehicleNumber(), paymentMethod);
                         
                         // Show final checkout summary
                         double hours = 0.0;
-                        if (updatedVehicle.getExitTime() != null) {
-                            hours = FeeCalculator.calculateHours(updatedVehicle.getEntryTime(), updatedVehicle.getExitTime());
+                        if (updatedVehicle.hasExitTime()) {
+                            hours = FeeCalculator.calculateHours(updatedVehicle.getEntryTimeMillis(), updatedVehicle.getExitTimeMillis());
                         }
                         
                         String summary = String.format(
@@ -645,7 +679,7 @@ public class VehicleListFrame extends javax.swing.JFrame {
                             summary, 
                             "Checkout Complete", JOptionPane.INFORMATION_MESSAGE);
                         
-                        loadVehicles(); // Refresh after checkout
+                        vehicleUpdated(updatedVehicle); // Refresh after checkout
                         
                         // Refresh parent frame if it's DashboardFrame
                         if (parentFrame instanceof DashboardFrame) {
@@ -657,7 +691,7 @@ public class VehicleListFrame extends javax.swing.JFrame {
                         JOptionPane.showMessageDialog(this, 
                             "Vehicle has been checked out.\nPayment can be processed later.", 
                             "Checkout Complete", JOptionPane.INFORMATION_MESSAGE);
-                        loadVehicles();
+                        vehicleUpdated(updatedVehicle);
                     }
                 } else {
                     JOptionPane.showMessageDialog(this, 
@@ -685,7 +719,7 @@ public class VehicleListFrame extends javax.swing.JFrame {
             return;
         }
         
-        Vehicle selectedVehicle = currentVehicleList.get(selectedRow);
+        Vehicle selectedVehicle = tableModel.getVehicleAt(selectedRow);
         double fee = controller.calculateVehicleFee(selectedVehicle.getVehicleNumber());
         
         if (fee < 0) {
@@ -696,9 +730,9 @@ public class VehicleListFrame extends javax.swing.JFrame {
         }
         
         String message;
-        if ("OUT".equals(selectedVehicle.getStatus()) && selectedVehicle.getExitTime() != null) {
+        if (selectedVehicle.getStatus() == VehicleStatus.OUT && selectedVehicle.hasExitTime()) {
             // Vehicle is checked out - show actual fee
-            double hours = FeeCalculator.calculateHours(selectedVehicle.getEntryTime(), selectedVehicle.getExitTime());
+            double hours = FeeCalculator.calculateHours(selectedVehicle.getEntryTimeMillis(), selectedVehicle.getExitTimeMillis());
             message = String.format(
                 "Parking Fee Calculation\n\n" +
                 "Vehicle Number: %s\n" +
@@ -721,9 +755,9 @@ public class VehicleListFrame extends javax.swing.JFrame {
             );
         } else {
             // Vehicle is still in - show estimated fee
-            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String currentTime = sdf.format(new java.util.Date());
-            double hours = FeeCalculator.calculateHours(selectedVehicle.getEntryTime(), currentTime);
+            long now = DateTimeUtil.now();
+            String currentTime = DateTimeUtil.format(now);
+            double hours = FeeCalculator.calculateHours(selectedVehicle.getEntryTimeMillis(), now);
             message = String.format(
                 "Estimated Parking Fee\n\n" +
                 "Vehicle Number: %s\n" +
@@ -874,5 +908,118 @@ public class VehicleListFrame extends javax.swing.JFrame {
             parentFrame.setVisible(true);
         }
     }
+    
+    @Override
+    public void dispose() {
+        // Stop a load that would otherwise keep filling a closed window
+        searchTimer.stop();
+        if (loadWorker != null) {
+            loadWorker.cancel(true);
+        }
+        super.dispose();
+    }
+    
+    /**
+     * Background worker that fetches, filters and sorts vehicles off the EDT
+     * and publishes them to the table in chunks
+     */
+    private class VehicleLoadWorker extends SwingWorker<Integer, Vehicle> {
+        private final ArrayList<Vehicle> source; // Null to fetch all vehicles
+        private final String searchText; // Null for no filter
+        private final String searchType;
+        private final boolean quiet; // Search as you type - no result dialog
+        private final Comparator<Vehicle> comparator; // Null to keep the source order
+        private final String sortName;
+        
+        VehicleLoadWorker(ArrayList<Vehicle> source, String searchText, String searchType, boolean quiet,
+                          Comparator<Vehicle> comparator, String sortName) {
+            this.source = source;
+            this.searchText = searchText;
+            this.searchType = searchType;
+            this.quiet = quiet;
+            this.comparator = comparator;
+            this.sortName = sortName;
+        }
+        
+        @Override
+        protected Integer doInBackground() {
+            ArrayList<Vehicle> vehicles;
+            if (source != null) {
+                vehicles = source;
+            } else if (searchText != null && "Vehicle Number".equals(searchType)) {
+                // Plate search index - no scan over the history
+                vehicles = controller.searchVehiclesByNumber(searchText);
+            } else if (searchText != null) {
+                // Linear Search Algorithm - O(n) time complexity, only matches are copied
+                vehicles = controller.findVehicles(record -> !isCancelled() && matchesSearch(record, searchText, searchType));
+                if (isCancelled()) {
+                    return 0;
+                }
+            } else {
+                vehicles = controller.getAllVehicles();
+            }
+            
+            if (comparator != null) {
+                Collections.sort(vehicles, comparator);
+            }
+            
+            // SwingWorker coalesces published vehicles into chunks for process()
+            int total = vehicles.size();
+            for (int i = 0; i < total; i++) {
+                if (isCancelled()) {
+                    return i;
+                }
+                publish(vehicles.get(i));
+                if ((i + 1) % LOAD_PROGRESS_STEP == 0) {
+                    setProgress((int) ((i + 1) * 100L / total));
+                }
+            }
+            setProgress(100);
+            return total;
+        }
+        
+        @Override
+        protected void process(List<Vehicle> chunk) {
+            // Chunks of a superseded load may still be queued
+            if (isCancelled() || loadWorker != this) {
+                return;
+            }
+            // One insert event per chunk
+            tableModel.appendVehicles(chunk);
+        }
+        
+        @Override
+        protected void done() {
+            if (isCancelled() || loadWorker != this) {
+                return;
+            }
+            progressBar.setVisible(false);
+            
+            // The last chunk may not have reached the table yet, so use the worker's count
+            int found;
+            try {
+                found = get();
+            } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                System.err.println("Error loading vehicles: " + e.getMessage());
+                return;
+            }
+            
+            if (sortName != null) {
+                JOptionPane.showMessageDialog(VehicleListFrame.this, 
+                    "Vehicles sorted by " + sortName + "!", 
+                    "Sort", JOptionPane.INFORMATION_MESSAGE);
+            } else if (searchText != null && !quiet) {
+                if (found == 0) {
+                    JOptionPane.showMessageDialog(VehicleListFrame.this, 
+                        "No vehicles found matching: " + searchText + " (by " + searchType + ")", 
+                        "Search Result", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(VehicleListFrame.this, 
+                        "Found " + found + " vehicle(s) matching: " + searchText + " (by " + searchType + ")", 
+                        "Search Result", JOptionPane.INFORMATION_MESSAGE);
+                }
+            }
+        }
+    }
 }
 
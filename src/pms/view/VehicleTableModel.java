@@ -0,0 +1,155 @@
+package pms.view;
+
+import pms.model.Vehicle;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Table model for the vehicle list
+ * Holds references to the store's vehicle records and formats cells on demand,
+ * so only the rows in the visible viewport are ever turned into strings
+ * @author uSer
+ */
+public class VehicleTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"Vehicle Number", "Vehicle Type", "Slot Number", "Entry Time", "Status"};
+    
+    private ArrayList<Vehicle> vehicles;
+    private IdentityHashMap<Vehicle, Integer> rowIndex; // Record -> row, records are mutated in place by the store
+    
+    // Constructor
+    public VehicleTableModel() {
+        this.vehicles = new ArrayList<>();
+        this.rowIndex = new IdentityHashMap<>();
+    }
+    
+    @Override
+    public int getRowCount() {
+        return vehicles.size();
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 2 ? Integer.class : String.class;
+    }
+    
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // Make table non-editable
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        Vehicle v = vehicles.get(row);
+        switch (column) {
+            case 0:
+                return v.getVehicleNumber();
+            case 1:
+                return v.getVehicleType() != null ? v.getVehicleType().getName() : "";
+            case 2:
+                return v.getSlotNumber();
+            case 3:
+                return v.getEntryTime();
+            case 4:
+                return v.getStatus().name();
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Get the vehicle shown in a row
+     * @param row Row index
+     * @return Vehicle record
+     */
+    public Vehicle getVehicleAt(int row) {
+        return vehicles.get(row);
+    }
+    
+    /**
+     * Get a copy of the vehicles in display order
+     * @return List of vehicles
+     */
+    public ArrayList<Vehicle> getVehicles() {
+        return new ArrayList<>(vehicles);
+    }
+    
+    /**
+     * Remove all rows
+     */
+    public void clear() {
+        vehicles.clear();
+        rowIndex.clear();
+        fireTableDataChanged();
+    }
+    
+    /**
+     * Append vehicles to the end of the table with a single insert event
+     * @param chunk Vehicles to append, in display order
+     */
+    public void appendVehicles(List<Vehicle> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        int first = vehicles.size();
+        for (Vehicle v : chunk) {
+            rowIndex.put(v, vehicles.size());
+            vehicles.add(v);
+        }
+        fireTableRowsInserted(first, vehicles.size() - 1);
+    }
+    
+    /**
+     * Append a single vehicle (e.g. one just added)
+     * @param v Vehicle to append
+     */
+    public void addVehicle(Vehicle v) {
+        rowIndex.put(v, vehicles.size());
+        vehicles.add(v);
+        fireTableRowsInserted(vehicles.size() - 1, vehicles.size() - 1);
+    }
+    
+    /**
+     * Repaint the row of a vehicle that was changed in place
+     * @param v Vehicle record that changed
+     * @return true if the vehicle is shown, false otherwise
+     */
+    public boolean vehicleUpdated(Vehicle v) {
+        Integer row = rowIndex.get(v);
+        if (row == null) {
+            return false;
+        }
+        fireTableRowsUpdated(row, row);
+        return true;
+    }
+    
+    /**
+     * Remove the row of a deleted vehicle
+     * @param v Vehicle record that was deleted
+     * @return true if the vehicle was shown, false otherwise
+     */
+    public boolean removeVehicle(Vehicle v) {
+        Integer row = rowIndex.remove(v);
+        if (row == null) {
+            return false;
+        }
+        vehicles.remove((int) row);
+        // Rows below the removed one move up
+        for (int i = row; i < vehicles.size(); i++) {
+            rowIndex.put(vehicles.get(i), i);
+        }
+        fireTableRowsDeleted(row, row);
+        return true;
+    }
+}
@@ -0,0 +1,197 @@
+package pms.model;
+
+import pms.util.DateTimeUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress tests for concurrent check-ins and checkouts on one data store
+ * Several threads (gate terminals) race for the same slots; afterwards the occupancy
+ * bitmap, the ParkingSlot objects, the active vehicles and the counts must all agree
+ * The store reads and writes its data files, so they go to a scratch directory
+ * (-Dpms.data.dir, or a temporary directory if it is not set)
+ * @author uSer
+ */
+public class ParkingDataStoreConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int SLOTS = 64;
+    private static final int ROUNDS = 200;
+    
+    private static File dataDir;
+    private ParkingDataStore store;
+    
+    @BeforeClass
+    public static void createDataDirectory() throws IOException {
+        // Must run before FileHandler is loaded, which reads the property once
+        String configured = System.getProperty("pms.data.dir");
+        if (configured == null) {
+            dataDir = Files.createTempDirectory("pms-test").toFile();
+            System.setProperty("pms.data.dir", dataDir.getAbsolutePath());
+        } else {
+            dataDir = new File(configured);
+            dataDir.mkdirs();
+        }
+    }
+    
+    @Before
+    public void openStore() {
+        // Each test starts from an empty parking lot
+        deleteContents(dataDir);
+        store = new ParkingDataStore(SLOTS);
+        assertTrue("history archive did not load", store.awaitHistory(10000));
+    }
+    
+    @After
+    public void closeStore() {
+        store.close();
+    }
+    
+    /**
+     * Every thread tries to park a vehicle of its own in every slot, starting at a different slot
+     * Exactly one check-in per slot may succeed
+     */
+    @Test
+    public void checkInsOnOverlappingSlots() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (int i = 0; i < SLOTS; i++) {
+                int slot = 1 + (thread * SLOTS / THREADS + i) % SLOTS;
+                if (store.addVehicle(parked("T" + thread + "S" + slot, slot))) {
+                    accepted.incrementAndGet();
+                }
+            }
+        });
+        
+        assertEquals("accepted check-ins", SLOTS, accepted.get());
+        assertSlotsConsistent();
+        assertEquals("available slots", 0, store.getAvailableSlotsCount());
+        assertEquals("next free slot", -1, store.getNextFreeSlot());
+    }
+    
+    /**
+     * Every thread tries to park the same vehicle, each in a slot of its own
+     * The vehicle may only be parked once
+     */
+    @Test
+    public void checkInsOfOneVehicle() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        runConcurrently(thread -> {
+            if (store.addVehicle(parked("SAME1", thread + 1))) {
+                accepted.incrementAndGet();
+            }
+        });
+        
+        assertEquals("accepted check-ins", 1, accepted.get());
+        assertSlotsConsistent();
+        assertEquals("available slots", SLOTS - 1, store.getAvailableSlotsCount());
+    }
+    
+    /**
+     * Threads repeatedly park in the next free slot and check out again, so slots are
+     * taken and released under contention; at the end every slot must be free
+     */
+    @Test
+    public void checkInsAndCheckouts() throws Exception {
+        AtomicInteger checkIns = new AtomicInteger();
+        AtomicInteger checkouts = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                String number = "C" + thread + "R" + round;
+                int slot = store.getNextFreeSlot();
+                if (slot > 0 && store.addVehicle(parked(number, slot))) {
+                    checkIns.incrementAndGet();
+                    if (store.checkoutVehicle(number, DateTimeUtil.now()) != null) {
+                        checkouts.incrementAndGet();
+                    }
+                }
+            }
+        });
+        
+        assertTrue("no check-in succeeded", checkIns.get() > 0);
+        assertEquals("checkouts", checkIns.get(), checkouts.get());
+        assertSlotsConsistent();
+        assertEquals("occupied slots", 0, store.getOccupiedSlots());
+        assertEquals("available slots", SLOTS, store.getAvailableSlotsCount());
+    }
+    
+    /**
+     * Check that the occupancy bitmap, the slots, the active vehicles and the counts agree
+     */
+    private void assertSlotsConsistent() {
+        int occupied = 0;
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            boolean bit = store.isSlotOccupied(slot);
+            assertEquals("bitmap and ParkingSlot disagree on slot " + slot, bit, store.getSlotByNumber(slot).isOccupied());
+            if (bit) {
+                occupied++;
+            }
+        }
+        
+        ArrayList<Vehicle> active = store.getActiveVehicles();
+        HashSet<Integer> activeSlots = new HashSet<>();
+        for (Vehicle v : active) {
+            assertTrue("two vehicles parked in slot " + v.getSlotNumber(), activeSlots.add(v.getSlotNumber()));
+            assertTrue("parked vehicle's slot is free: " + v.getSlotNumber(), store.isSlotOccupied(v.getSlotNumber()));
+        }
+        assertEquals("occupied slots and parked vehicles", active.size(), occupied);
+        assertEquals("occupied count", occupied, store.getOccupiedSlots());
+        assertEquals("available count", SLOTS - occupied, store.getAvailableSlotsCount());
+        assertEquals("available slot list", SLOTS - occupied, store.getAvailableSlotNumbers().size());
+    }
+    
+    /**
+     * Run a task on every thread at once and wait for all of them
+     * @param task Task, given the thread index
+     */
+    private static void runConcurrently(IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(); // Rethrows a thread's failure
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static Vehicle parked(String number, int slot) {
+        return new Vehicle(number, VehicleType.CAR, slot, DateTimeUtil.now(), DateTimeUtil.NO_TIME, VehicleStatus.IN);
+    }
+    
+    private static void deleteContents(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteContents(file);
+                file.delete();
+            }
+        }
+    }
+}